@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: BestOfKGenerator.java
+ * The BestOfKGenerator makes levels more consistent: it generates K density map levels (see DensityMapGenerator) for every level,
+ * scores them, and keeps the best one. The K candidates are generated and scored in parallel on a ForkJoinPool, so on a multi-core
+ * computer this takes about as long as generating one or two levels (a few milliseconds at most, even for the last levels).
+ * Without a pool (null), the candidates are generated one after another on the calling thread.
+ *
+ * A candidate is scored by how far it is from the typical level of its level number in three ways:
+ * - obstacle coverage: how many of the 256 grid cells are covered.
+ * - goal distance: how far the goal is from the player's starting cell, in cells.
+ * - free path width: the clearance (distance in cells to the nearest obstacle) that the roomiest path from the start to the goal
+ *   manages to keep the whole way. 1 means the path has to squeeze right past obstacles. It's 0 if there's no path at all.
+ * The typical level is the median of the candidates themselves, so outliers (crowded or empty levels, goals right next to the start,
+ * paths that are blocked or choked) lose, without any tables of numbers that would have to be tuned along with the density map.
+ *
+ * Candidate 0 uses the level seed itself, and the others get seeds made from it, so the same level seed always gives the same level.
+ * The kept level's seed is its candidate's seed, which DensityMapGenerator turns into that exact level (so replays still work).
+ * A BestOfKGenerator reuses its candidates, so generate() is synchronized: threads that share one take turns.
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class BestOfKGenerator implements LevelGenerator
+{
+    private static final int CELL_COUNT = GameObjects.GRID_SIZE * GameObjects.GRID_SIZE;
+    // The player always starts in this cell (see GameSimulation.resetPlayer()).
+    private static final int START_CELL_X = 1;
+    private static final int START_CELL_Y = GameObjects.GRID_SIZE - 1;
+    // How much of each metric is worth the same in the score.
+    private static final double COVERAGE_SCALE = 4; // Cells.
+    private static final double DISTANCE_SCALE = 1; // Cells.
+    private static final double WIDTH_SCALE = 1; // Cells.
+
+    private ForkJoinPool pool;
+    private GameObjects[] candidates;
+    private long[] candidateSeeds;
+    private int candidateLevel;
+    // The metrics of each candidate, and scratch space for working them out (separate for each candidate, since they run in parallel).
+    private double[] coverages;
+    private double[] goalDistances;
+    private double[] pathWidths;
+    private int[][] clearances;
+    private int[][] queues;
+    private double[] sortedMetric; // For finding medians.
+    private Runnable[] evaluations; // evaluations[i] generates and measures candidate i.
+    private ForkJoinTask<?>[] tasks;
+
+    public BestOfKGenerator(int k, ForkJoinPool thePool)
+    {
+        if (k < 1)
+        {
+            throw new IllegalArgumentException("There has to be at least one candidate.");
+        }
+        pool = thePool;
+        candidates = new GameObjects[k];
+        candidateSeeds = new long[k];
+        coverages = new double[k];
+        goalDistances = new double[k];
+        pathWidths = new double[k];
+        clearances = new int[k][CELL_COUNT];
+        queues = new int[k][CELL_COUNT];
+        sortedMetric = new double[k];
+        evaluations = new Runnable[k];
+        tasks = new ForkJoinTask<?>[k];
+        for (int i = 0; i < k; i++)
+        {
+            candidates[i] = new GameObjects(0, false); // Every candidate gets its level from generate(), so nothing is generated here.
+            candidates[i].setTimed(false); // The whole best-of-K generation is timed instead.
+            int index = i;
+            evaluations[i] = () -> evaluate(index);
+        }
+    }
+
+    public int getCandidateCount()
+    {
+        return candidates.length;
+    }
+
+    public synchronized void generate(GameObjects gameObjects, int level, long levelSeed)
+    {
+        if (candidates.length == 1 || level >= GameObjects.FINAL_LEVEL)
+        {
+            DensityMapGenerator.INSTANCE.generate(gameObjects, level, levelSeed); // Nothing to choose from.
+            return;
+        }
+        candidateLevel = level;
+        candidateSeeds[0] = levelSeed;
+        SplittableRandom seedGenerator = new SplittableRandom(levelSeed);
+        for (int i = 1; i < candidates.length; i++)
+        {
+            candidateSeeds[i] = seedGenerator.nextLong();
+        }
+
+        if (pool != null)
+        {
+            for (int i = 1; i < candidates.length; i++)
+            {
+                tasks[i] = pool.submit(evaluations[i]);
+            }
+            evaluate(0); // The calling thread does one of them itself instead of just waiting.
+            for (int i = 1; i < candidates.length; i++)
+            {
+                tasks[i].join();
+                tasks[i] = null;
+            }
+        }
+        else
+        {
+            for (int i = 0; i < candidates.length; i++)
+            {
+                evaluate(i);
+            }
+        }
+
+        double coverageTarget = getMedian(coverages);
+        double distanceTarget = getMedian(goalDistances);
+        double widthTarget = getMedian(pathWidths);
+        int best = 0;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < candidates.length; i++)
+        {
+            double coverageError = (coverages[i] - coverageTarget) / COVERAGE_SCALE;
+            double distanceError = (goalDistances[i] - distanceTarget) / DISTANCE_SCALE;
+            double widthError = (pathWidths[i] - widthTarget) / WIDTH_SCALE;
+            double score = coverageError * coverageError + distanceError * distanceError + widthError * widthError;
+            if (score < bestScore) // Ties go to the lower candidate, so the choice doesn't depend on timing.
+            {
+                best = i;
+                bestScore = score;
+            }
+        }
+        gameObjects.copyFrom(candidates[best]);
+    }
+
+    // Generates candidate i and works out its metrics.
+    private void evaluate(int i)
+    {
+        GameObjects candidate = candidates[i];
+        candidate.generateLevel(candidateLevel, candidateSeeds[i]);
+        long[] occupancy = candidate.getOccupancy();
+        int covered = 0;
+        for (int j = 0; j < occupancy.length; j++)
+        {
+            covered += Long.bitCount(occupancy[j]);
+        }
+        coverages[i] = covered;
+        int goalCellX = candidate.getGoal().x / GameObjects.CELL_SIZE;
+        int goalCellY = candidate.getGoal().y / GameObjects.CELL_SIZE;
+        goalDistances[i] = Math.hypot(goalCellX - START_CELL_X, goalCellY - START_CELL_Y);
+        pathWidths[i] = getPathWidth(candidate, goalCellX + GameObjects.GRID_SIZE * goalCellY, clearances[i], queues[i]);
+    }
+
+    // The free path width described at the top. clearance and queue are scratch arrays with one entry per cell.
+    public static int getPathWidth(GameObjects level, int goalCell, int[] clearance, int[] queue)
+    {
+        int size = GameObjects.GRID_SIZE;
+        // Every cell's clearance is found with a breadth-first search that starts from every covered cell at once
+        // (diagonal steps count as one, so the clearance is a square around the cell). Without any obstacles it stays at GRID_SIZE.
+        int head = 0;
+        int tail = 0;
+        for (int cell = 0; cell < CELL_COUNT; cell++)
+        {
+            if (level.isCellOccupied(cell % size, cell / size))
+            {
+                clearance[cell] = 0;
+                queue[tail++] = cell;
+            }
+            else
+            {
+                clearance[cell] = size;
+            }
+        }
+        while (head < tail)
+        {
+            int cell = queue[head++];
+            int cellX = cell % size;
+            int cellY = cell / size;
+            for (int y = Math.max(0, cellY - 1); y <= Math.min(size - 1, cellY + 1); y++)
+            {
+                for (int x = Math.max(0, cellX - 1); x <= Math.min(size - 1, cellX + 1); x++)
+                {
+                    int next = x + size * y;
+                    if (clearance[next] > clearance[cell] + 1)
+                    {
+                        clearance[next] = clearance[cell] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        // Then the widest width that still connects the start to the goal, trying the widest first. The search only goes through
+        // cells with at least that much clearance, left/right/up/down. The sign bit of a clearance marks the cell as reached.
+        int startCell = START_CELL_X + size * START_CELL_Y;
+        for (int width = Math.min(clearance[startCell], clearance[goalCell]); width > 0; width--)
+        {
+            head = 0;
+            tail = 0;
+            queue[tail++] = startCell;
+            clearance[startCell] |= Integer.MIN_VALUE;
+            boolean reached = false;
+            while (head < tail && !reached)
+            {
+                int cell = queue[head++];
+                reached = cell == goalCell;
+                int cellX = cell % size;
+                for (int direction = 0; direction < 4; direction++)
+                {
+                    int next;
+                    if (direction == 0 && cellX > 0)
+                    {
+                        next = cell - 1;
+                    }
+                    else if (direction == 1 && cellX < size - 1)
+                    {
+                        next = cell + 1;
+                    }
+                    else if (direction == 2 && cell >= size)
+                    {
+                        next = cell - size;
+                    }
+                    else if (direction == 3 && cell < CELL_COUNT - size)
+                    {
+                        next = cell + size;
+                    }
+                    else
+                    {
+                        continue;
+                    }
+                    if (clearance[next] >= width) // Reached cells are negative, so they're skipped here.
+                    {
+                        clearance[next] |= Integer.MIN_VALUE;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            for (int cell = 0; cell < CELL_COUNT; cell++)
+            {
+                clearance[cell] &= Integer.MAX_VALUE;
+            }
+            if (reached)
+            {
+                return width;
+            }
+        }
+        return 0;
+    }
+
+    // The median of one metric over the candidates.
+    private double getMedian(double[] values)
+    {
+        int k = candidates.length;
+        System.arraycopy(values, 0, sortedMetric, 0, k);
+        Arrays.sort(sortedMetric);
+        return k % 2 == 1 ? sortedMetric[k / 2] : (sortedMetric[k / 2 - 1] + sortedMetric[k / 2]) / 2;
+    }
+}
\ No newline at end of file
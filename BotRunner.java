@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: BotRunner.java
+ * The BotRunner plays many whole games (level 1 to 30) at once with bots instead of players, without a window, to see how hard the game is:
+ *     java BotRunner [runs] [threads] [seed] [mistake rate] [route search states]
+ * Every run is completely separate. It has its own GameSimulation, upgrades, level number, random numbers, and bot, so nothing
+ * is shared between runs except the totals at the end (and nothing touches Main or PlayerPanel). This means the runs can be spread
+ * over all of the cores with a plain thread pool, and the same seed gives every run the same levels.
+ *
+ * The bot plays like a decent player who sometimes slips up:
+ * - It finds a way to the goal from the start with LevelVerifier (each thread has its own verifier that searches on that thread only).
+ *   If none was found within the search budget, it tries once more with a bigger one. Only if there still isn't one does it press r
+ *   for a new level. Levels that can't be beaten count toward giving up on the run (MAX_REROLLS), but levels where no way was found don't.
+ * - It follows that way tick by tick, but every tick there's a chance (the mistake rate) that it presses random keys instead.
+ * - The way from the start is kept until the level is beaten, so after dying it starts over from it without searching again
+ *   (it's the same level from the same start, so the same way works again). A level with a way from the start is never given up for a new one.
+ *   Every tick it checks that it's where the way says it should be. If it survives a mistake but ends up off course, it first tries
+ *   picking the way back up close by, then looks for a new way from where it is, and if neither works it keeps following the old way
+ *   and hopes for the best. When a way runs out without reaching the goal, it presses random keys for a bit and looks again.
+ * - At every upgrade screen, it picks a random upgrade that a player could pick (see UpgradePanel.canUpgrade()).
+ * The route search is limited by how many states it expands (LevelVerifier.setExpansionBudget()) instead of by time, so the same seed
+ * gives the same results on any computer and with any number of threads. New levels because a level can't be beaten and new levels
+ * because the search ran out of budget are counted separately.
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class BotRunner
+{
+    private static final int FIELD_SIZE = GameObjects.CELL_SIZE * GameObjects.GRID_SIZE;
+    private static final int MAX_REROLLS = 20; // New levels that can't be beaten per level number before the bot gives up on the run.
+    private static final int MAX_TIMEOUT_REROLLS = 200; // Same for new levels because no way was found (only so that the run always ends).
+    private static final int MAX_LEVEL_TICKS = 60 * 60 * 5; // 5 minutes of game time per level before the bot gives up on the run.
+    private static final int BUDGET_STEPS = 2; // How many budgets a route search from the start tries (see search()).
+    private static final int BUDGET_GROWTH = 4; // How much bigger each of those budgets is than the one before.
+    private static final int REPAIR_RANGE = 15; // How far along the old way the bot looks for a point to pick it back up at (see repairRoute()).
+    private static final int WANDER_TICKS = 30; // Ticks of random keys when there's no way from where the bot is.
+    private static final int GAMEPLAY_KEYS = GameSimulation.RIGHT | GameSimulation.LEFT | GameSimulation.UP | GameSimulation.DOWN
+        | GameSimulation.Z | GameSimulation.X | GameSimulation.C | GameSimulation.SPACE;
+
+    private double mistakeRate;
+    private long routeSearchStates;
+    // Every worker thread gets its own LevelVerifier, since a LevelVerifier can only search one level at a time.
+    private ThreadLocal<LevelVerifier> verifiers;
+
+    // Totals from every run. Index i of the arrays is for level i.
+    private AtomicInteger clears = new AtomicInteger();
+    private AtomicLong totalTicks = new AtomicLong();
+    private AtomicLongArray reached = new AtomicLongArray(GameObjects.FINAL_LEVEL + 1);
+    private AtomicLongArray deaths = new AtomicLongArray(GameObjects.FINAL_LEVEL + 1);
+    private AtomicLongArray unsolvable = new AtomicLongArray(GameObjects.FINAL_LEVEL + 1); // New levels because it can't be beaten.
+    private AtomicLongArray timeouts = new AtomicLongArray(GameObjects.FINAL_LEVEL + 1); // New levels because no way was found in budget.
+    private AtomicLongArray levelTicks = new AtomicLongArray(GameObjects.FINAL_LEVEL + 1);
+
+    public BotRunner(double theMistakeRate, long theRouteSearchStates)
+    {
+        mistakeRate = theMistakeRate;
+        routeSearchStates = theRouteSearchStates;
+        verifiers = ThreadLocal.withInitial(() -> new LevelVerifier(null, 0)); // No time limit, only the expansion budget (see search()).
+    }
+
+    // Plays the given number of runs on the given number of threads. Every run gets its own seed from the given seed.
+    public void runAll(int runs, int threads, long seed) throws InterruptedException
+    {
+        SplittableRandom seedGenerator = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+        for (int i = 0; i < runs; i++)
+        {
+            long runSeed = seedGenerator.nextLong();
+            results.add(executor.submit(() -> playRun(runSeed)));
+        }
+        executor.shutdown();
+        for (Future<?> result : results)
+        {
+            try
+            {
+                result.get();
+            }
+            catch (ExecutionException e)
+            {
+                throw new RuntimeException("A run crashed.", e.getCause());
+            }
+        }
+    }
+
+    // Plays one whole game. Everything it changes is local to this call, except the totals.
+    public void playRun(long runSeed)
+    {
+        SplittableRandom random = new SplittableRandom(runSeed);
+        int[] upgrades = new int[9];
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, upgrades, random.nextLong());
+        long runTicks = 0;
+        int level = 1;
+        while (level < GameObjects.FINAL_LEVEL)
+        {
+            reached.getAndIncrement(level);
+            long ticks = playLevel(simulation, level, random);
+            if (ticks < 0)
+            {
+                runTicks -= ticks;
+                break; // The bot gave up.
+            }
+            runTicks += ticks;
+
+            // Same as Main.nextLevel(): there's an upgrade screen before every odd level.
+            level++;
+            if (level % 2 == 1 && level < GameObjects.FINAL_LEVEL)
+            {
+                pickUpgrade(upgrades, random);
+            }
+            simulation.resetLevel(level);
+        }
+        if (level == GameObjects.FINAL_LEVEL)
+        {
+            clears.getAndIncrement();
+        }
+        totalTicks.getAndAdd(runTicks);
+    }
+
+    // Plays one level until the goal is reached. Returns the ticks it took, or -(ticks) if the bot gave up.
+    private long playLevel(GameSimulation simulation, int level, SplittableRandom random)
+    {
+        LevelVerifier verifier = verifiers.get();
+        long[] state = new long[GameSimulation.STATE_SIZE];
+        int[] startRoute = null; // The way from the start of this level, kept for after dying.
+        long[] startPositions = null; // Where the player should be after each tick of startRoute (see getRoutePositions()).
+        int[] route = null;
+        long[] routePositions = null; // Same for route, or null if it isn't checked.
+        int routeIndex = 0;
+        int unsolvableRerolls = 0;
+        int timeoutRerolls = 0;
+        // One tick without keys first. Keys only do something when they're pressed, so keys still held from the last level
+        // would make the way from the start go differently than it did in the search (the same goes for after dying, see below).
+        simulation.tick(0);
+        long ticks = 1;
+        while (true)
+        {
+            if (route == null && startRoute == null)
+            {
+                int searchResult = search(verifier, simulation, true, state);
+                if (searchResult != LevelVerifier.SOLVABLE)
+                {
+                    // No way was found even with the bigger budget, so press r for a new level
+                    // (a tick without r first, since r only works when it's pressed).
+                    // Running out of budget doesn't mean the level can't be beaten, so those new levels don't count toward giving up.
+                    if (searchResult == LevelVerifier.UNSOLVABLE)
+                    {
+                        if (unsolvableRerolls == MAX_REROLLS)
+                        {
+                            break;
+                        }
+                        unsolvableRerolls++;
+                        unsolvable.getAndIncrement(level);
+                    }
+                    else
+                    {
+                        if (timeoutRerolls == MAX_TIMEOUT_REROLLS)
+                        {
+                            break;
+                        }
+                        timeoutRerolls++;
+                        timeouts.getAndIncrement(level);
+                    }
+                    simulation.tick(0);
+                    simulation.tick(GameSimulation.R);
+                    ticks += 2;
+                    continue;
+                }
+                startRoute = verifier.getSolution();
+                startPositions = getRoutePositions(simulation, startRoute);
+                route = startRoute;
+                routePositions = startPositions;
+                routeIndex = 0;
+            }
+            else if (route == null)
+            {
+                // The level can be beaten from the start, so it's never given up on. If there's no way from here either,
+                // the bot presses random keys for a while (dying sends it back to the start and the way from there) and then looks again.
+                if (search(verifier, simulation, false, state) == LevelVerifier.SOLVABLE)
+                {
+                    route = verifier.getSolution();
+                    routePositions = getRoutePositions(simulation, route);
+                }
+                else
+                {
+                    route = new int[WANDER_TICKS];
+                    for (int i = 0; i < route.length; i++)
+                    {
+                        route[i] = random.nextInt() & GAMEPLAY_KEYS;
+                    }
+                    routePositions = null;
+                }
+                routeIndex = 0;
+            }
+
+            int keys = route[routeIndex++];
+            if (random.nextDouble() < mistakeRate)
+            {
+                keys = random.nextInt() & GAMEPLAY_KEYS;
+            }
+            int result = simulation.tick(keys);
+            ticks++;
+            if (result == GameSimulation.TICK_GOAL)
+            {
+                levelTicks.getAndAdd(level, ticks);
+                return ticks;
+            }
+            if (result == GameSimulation.TICK_DIED)
+            {
+                deaths.getAndIncrement(level);
+                route = startRoute;
+                routePositions = startPositions;
+                routeIndex = 0;
+                simulation.tick(0); // Let go of the keys, like at the start of the level.
+                ticks++;
+            }
+            else if (routeIndex == route.length)
+            {
+                route = null; // The way ran out without reaching the goal, so look for a new one from here.
+            }
+            else if (routePositions != null && getPosition(simulation) != routePositions[routeIndex - 1])
+            {
+                // Off course after a mistake. Picking the old way back up nearby usually works and is far cheaper than a new search.
+                // If neither works, keep following the old way (unchecked) and hope for the best.
+                int[] newRoute = repairRoute(simulation, route, routeIndex, state);
+                if (newRoute == null && search(verifier, simulation, false, state) == LevelVerifier.SOLVABLE)
+                {
+                    newRoute = verifier.getSolution();
+                }
+                if (newRoute != null)
+                {
+                    route = newRoute;
+                    routePositions = getRoutePositions(simulation, route);
+                    routeIndex = 0;
+                }
+                else
+                {
+                    routePositions = null;
+                }
+            }
+            if (ticks > MAX_LEVEL_TICKS)
+            {
+                break;
+            }
+        }
+        levelTicks.getAndAdd(level, ticks);
+        return -ticks;
+    }
+
+    // Looks for a way to the goal from the start of the level (fromStart) or from where the player is now. Running out of budget
+    // doesn't mean there isn't one, so from the start it tries again after UNKNOWN with a budget BUDGET_GROWTH times as big,
+    // up to BUDGET_STEPS budgets. From anywhere else it only tries once, since a bigger budget hardly ever finds a way there
+    // (the bot has the way from the start to fall back on anyway).
+    // Returns SOLVABLE (see LevelVerifier.getSolution()), UNSOLVABLE, or UNKNOWN if even the biggest budget ran out.
+    private int search(LevelVerifier verifier, GameSimulation simulation, boolean fromStart, long[] state)
+    {
+        int result = LevelVerifier.UNKNOWN;
+        long budget = routeSearchStates;
+        for (int step = 0; step < (fromStart ? BUDGET_STEPS : 1) && result == LevelVerifier.UNKNOWN; step++)
+        {
+            verifier.setExpansionBudget(budget);
+            if (fromStart)
+            {
+                result = verifier.verify(simulation.getGameObjects(), simulation.getUpgrades());
+            }
+            else
+            {
+                simulation.saveState(state, 0);
+                result = verifier.findRoute(simulation.getGameObjects(), simulation.getUpgrades(), state, 0);
+            }
+            budget *= BUDGET_GROWTH;
+        }
+        return result;
+    }
+
+    // Tries following the rest of route from where the player is now, starting at each point of it up to REPAIR_RANGE ticks
+    // ahead of or behind routeIndex (closest first), on a separate GameSimulation.
+    // Returns the inputs from the first point that still reaches the goal, or null if none does.
+    private static int[] repairRoute(GameSimulation simulation, int[] route, int routeIndex, long[] state)
+    {
+        simulation.saveState(state, 0);
+        GameSimulation follower = new GameSimulation(FIELD_SIZE, FIELD_SIZE, simulation.getUpgrades().clone(), simulation.getGameObjects());
+        for (int offset = 0; offset <= 2 * REPAIR_RANGE; offset++)
+        {
+            int start = routeIndex + (offset % 2 == 0 ? offset / 2 : -(offset + 1) / 2); // routeIndex, then +1, -1, +2, -2, ...
+            if (start < 0 || start >= route.length)
+            {
+                continue;
+            }
+            follower.loadState(state, 0);
+            for (int i = start; i < route.length; i++)
+            {
+                int result = follower.tick(route[i]);
+                if (result == GameSimulation.TICK_GOAL)
+                {
+                    return Arrays.copyOfRange(route, start, i + 1);
+                }
+                if (result != GameSimulation.TICK_CONTINUE)
+                {
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Where the player should be after each tick of following route from where they are now (see getPosition()).
+    // The route is followed on a separate GameSimulation that shares the level, like in LevelVerifier.
+    private static long[] getRoutePositions(GameSimulation simulation, int[] route)
+    {
+        long[] state = new long[GameSimulation.STATE_SIZE];
+        simulation.saveState(state, 0);
+        GameSimulation follower = new GameSimulation(FIELD_SIZE, FIELD_SIZE, simulation.getUpgrades().clone(), simulation.getGameObjects());
+        follower.loadState(state, 0);
+        long[] positions = new long[route.length];
+        for (int i = 0; i < route.length; i++)
+        {
+            follower.tick(route[i]);
+            positions[i] = getPosition(follower);
+        }
+        return positions;
+    }
+
+    // The player's position as one number (x << 32 | y, like in GameSimulation.saveState()). Only the position is compared,
+    // since dying doesn't reset everything in the saved state (e.g. the waypoint), and a different speed shows up in the position a tick later.
+    private static long getPosition(GameSimulation simulation)
+    {
+        return ((long)simulation.getPlayerX() << 32) | (simulation.getPlayerY() & 0xFFFFFFFFL);
+    }
+
+    private static void pickUpgrade(int[] upgrades, SplittableRandom random)
+    {
+        ArrayList<Integer> choices = new ArrayList<Integer>();
+        for (int i = 0; i < upgrades.length; i++)
+        {
+            if (UpgradePanel.canUpgrade(upgrades, i))
+            {
+                choices.add(i);
+            }
+        }
+        if (!choices.isEmpty())
+        {
+            upgrades[choices.get(random.nextInt(choices.size()))]++;
+        }
+    }
+
+    public void printReport(int runs, long elapsedNanos)
+    {
+        double simulatedSeconds = totalTicks.get() * GameSimulation.TICK_NANOS / 1e9;
+        System.out.println("Runs: " + runs + ", cleared: " + clears.get() + String.format(" (%.1f%%)", 100.0 * clears.get() / runs));
+        System.out.println(String.format("Simulated %.0f s of play in %.1f s (%.0fx real time).", simulatedSeconds, elapsedNanos / 1e9,
+            simulatedSeconds / (elapsedNanos / 1e9)));
+        System.out.println("Level  reached  deaths/run  unsolvable/run  timeouts/run  seconds/run");
+        for (int level = 1; level < GameObjects.FINAL_LEVEL; level++)
+        {
+            long levelRuns = reached.get(level);
+            if (levelRuns == 0)
+            {
+                break;
+            }
+            System.out.println(String.format("%5d  %7d  %10.2f  %14.2f  %12.2f  %11.1f", level, levelRuns,
+                (double)deaths.get(level) / levelRuns, (double)unsolvable.get(level) / levelRuns, (double)timeouts.get(level) / levelRuns,
+                levelTicks.get(level) * GameSimulation.TICK_NANOS / 1e9 / levelRuns));
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        double mistakeRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+        long routeSearchStates = args.length > 4 ? Long.parseLong(args[4]) : 80000; // About what 200 ms used to search on one core.
+
+        System.out.println("Playing " + runs + " runs on " + threads + " threads with seed " + seed + ".");
+        BotRunner botRunner = new BotRunner(mistakeRate, routeSearchStates);
+        long startTime = System.nanoTime();
+        botRunner.runAll(runs, threads, seed);
+        botRunner.printReport(runs, System.nanoTime() - startTime);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: ChunkedWorld.java
+ * The ChunkedWorld is the level for the scrolling world mode ("java Main --world"), where instead of beating one screen at a time,
+ * the player keeps going right through an endless world.
+ * The world is a row of 400x400 chunks. Chunk i covers x from 400 * i to 400 * i + 399, and each chunk is a normal GameObjects level
+ * (made by the same generateLevel() as always) whose level number goes up by one every chunk, so the world gets harder the further it goes.
+ * The goals of the chunks aren't used, but their starting regions (which never have obstacles) are: dying sends the player back
+ * to the start of the furthest chunk they've reached, like a checkpoint.
+ *
+ * Chunks are never stored for good. A chunk's level seed only depends on the world seed and the chunk number, so a chunk can be thrown
+ * away and generated again later and it'll be exactly the same. The chunks around the player (one behind, AHEAD_CHUNKS ahead) are
+ * generated by a background thread before the player gets there, and at most MAX_CHUNKS are kept, dropping the least recently used one
+ * when there are too many. This means that the memory and the generation work per chunk stay the same no matter how far the player goes.
+ * If a chunk is needed before the background thread has made it (e.g. right after a reset), it's generated right there instead.
+*/
+
+import java.awt.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+public class ChunkedWorld implements Runnable
+{
+    public static final int CHUNK_SIZE = GameObjects.CELL_SIZE * GameObjects.GRID_SIZE;
+    private static final int AHEAD_CHUNKS = 2; // How many chunks ahead of the player's chunk are generated in advance.
+    private static final int MAX_CHUNKS = 8; // How many chunks are kept at most. This has to be more than the chunks around the player.
+
+    // The chunks that are kept, by chunk number. A LinkedHashMap in access order keeps the least recently used chunk first,
+    // which is the one removeEldestEntry() drops. It's used by both threads, so it's only touched while holding its lock.
+    private LinkedHashMap<Integer, GameObjects> chunks = new LinkedHashMap<Integer, GameObjects>(16, 0.75f, true)
+    {
+        protected boolean removeEldestEntry(Map.Entry<Integer, GameObjects> eldest)
+        {
+            return size() > MAX_CHUNKS;
+        }
+    };
+    private SplittableRandom seedGenerator; // Gives every new world its seed. Only used by the thread running the game.
+    private volatile long worldSeed;
+    private volatile int currentChunk = 0; // The chunk the player is in.
+    private int furthestChunk = 0; // The furthest chunk the player has reached in this world (the checkpoint).
+    private AtomicLong generatedCount = new AtomicLong(); // Chunks generated so far, for seeing how much work the world does.
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public ChunkedWorld(long seed)
+    {
+        // Split off a separate stream so that these worlds don't repeat the levels generated from the same seed elsewhere.
+        seedGenerator = new SplittableRandom(seed).split();
+        worldSeed = seedGenerator.nextLong();
+    }
+
+    public void start()
+    {
+        running = true;
+        thread = new Thread(this, "Chunk generation");
+        thread.setDaemon(true); // Don't keep the game running after the window is closed.
+        thread.start();
+    }
+
+    public void stop()
+    {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    // Starts a new world (like pressing r for a new level).
+    public void reset()
+    {
+        synchronized (chunks)
+        {
+            worldSeed = seedGenerator.nextLong();
+            chunks.clear();
+        }
+        currentChunk = 0;
+        furthestChunk = 0;
+        LockSupport.unpark(thread);
+    }
+
+    // Lets the world know where the player is (called every tick), so that the background thread gets the chunks ahead ready.
+    public void update(int playerX)
+    {
+        int chunk = Math.max(0, Math.floorDiv(playerX, CHUNK_SIZE));
+        furthestChunk = Math.max(furthestChunk, chunk);
+        if (chunk != currentChunk)
+        {
+            currentChunk = chunk;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public void run()
+    {
+        while (running)
+        {
+            // Generate one missing chunk at a time, then start over in case the player moved or the world was reset in the meantime.
+            int chunk = currentChunk;
+            boolean generated = false;
+            for (int i = Math.max(0, chunk - 1); i <= chunk + AHEAD_CHUNKS && !generated; i++)
+            {
+                long seed = worldSeed;
+                boolean missing;
+                synchronized (chunks)
+                {
+                    missing = !chunks.containsKey(i);
+                }
+                if (missing)
+                {
+                    addChunk(i, generateChunk(i, seed), seed);
+                    generated = true;
+                }
+            }
+            if (!generated)
+            {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    // Returns chunk number index, generating it first if it isn't kept right now. Chunks before the first one are null (nothing is there).
+    public GameObjects getChunk(int index)
+    {
+        if (index < 0)
+        {
+            return null;
+        }
+        long seed = worldSeed;
+        synchronized (chunks)
+        {
+            GameObjects chunk = chunks.get(index);
+            if (chunk != null)
+            {
+                return chunk;
+            }
+        }
+        return addChunk(index, generateChunk(index, seed), seed);
+    }
+
+    // Keeps a newly generated chunk, unless the world was reset while it was being generated (then it belongs to the old world).
+    // If the other thread got there first, its copy is kept instead (the two are the same anyway).
+    private GameObjects addChunk(int index, GameObjects chunk, long seed)
+    {
+        synchronized (chunks)
+        {
+            if (seed != worldSeed)
+            {
+                return chunk;
+            }
+            GameObjects existing = chunks.putIfAbsent(index, chunk);
+            return existing != null ? existing : chunk;
+        }
+    }
+
+    private GameObjects generateChunk(int index, long seed)
+    {
+        // The golden ratio constant spreads out the chunk numbers, like the level numbers in GameObjects.
+        long chunkSeed = new SplittableRandom(seed + 0x9E3779B97F4A7C15L * index).nextLong();
+        GameObjects chunk = new GameObjects(chunkSeed, false); // Only the level below is generated, not level 1 first.
+        chunk.generateLevel(getChunkLevel(index), chunkSeed);
+        generatedCount.getAndIncrement();
+        return chunk;
+    }
+
+    // The level number (difficulty) that chunk number index is generated with. The first chunk is level 1, which has no obstacles.
+    public static int getChunkLevel(int index)
+    {
+        return Math.min(index + 1, GameObjects.FINAL_LEVEL - 1);
+    }
+
+    // Same as GameObjects.sweepObstacles(), but in world coordinates, through every chunk that the move touches.
+    public double sweepObstacles(int x, int y, int width, int height, int dx, int dy)
+    {
+        int firstChunk = Math.floorDiv(Math.min(x, x + dx), CHUNK_SIZE);
+        int lastChunk = Math.floorDiv(Math.max(x, x + dx) + width - 1, CHUNK_SIZE);
+        double earliest = GameObjects.NO_HIT;
+        for (int i = Math.max(0, firstChunk); i <= lastChunk; i++)
+        {
+            earliest = Math.min(earliest, getChunk(i).sweepObstacles(x - i * CHUNK_SIZE, y, width, height, dx, dy));
+        }
+        return earliest;
+    }
+
+    // Same as GameObjects.intersectsObstacle(), but in world coordinates.
+    public boolean intersectsObstacle(Rectangle rect)
+    {
+        int firstChunk = Math.floorDiv(rect.x, CHUNK_SIZE);
+        int lastChunk = Math.floorDiv(rect.x + rect.width - 1, CHUNK_SIZE);
+        for (int i = Math.max(0, firstChunk); i <= lastChunk; i++)
+        {
+            if (getChunk(i).intersectsObstacle(rect.x - i * CHUNK_SIZE, rect.y, rect.width, rect.height))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Where the player goes after dying: the start of the furthest chunk reached, whose starting region never has obstacles.
+    public int getCheckpointX()
+    {
+        return furthestChunk * CHUNK_SIZE;
+    }
+
+    public int getFurthestChunk()
+    {
+        return furthestChunk;
+    }
+
+    public int getKeptChunkCount()
+    {
+        synchronized (chunks)
+        {
+            return chunks.size();
+        }
+    }
+
+    public long getGeneratedCount()
+    {
+        return generatedCount.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: DensityMapGenerator.java
+ * The DensityMapGenerator is the game's original level generation, and what every GameObjects object uses unless told otherwise.
+ * The generation itself is still in GameObjects (see GameObjects.buildDensityMapLevel()), since it works directly on the level's
+ * obstacles, goal, and random numbers. It has no state of its own, so the one INSTANCE is shared by every thread.
+*/
+
+public class DensityMapGenerator implements LevelGenerator
+{
+    public static final DensityMapGenerator INSTANCE = new DensityMapGenerator();
+
+    private DensityMapGenerator()
+    {
+    }
+
+    public void generate(GameObjects gameObjects, int level, long levelSeed)
+    {
+        gameObjects.buildDensityMapLevel(level, levelSeed);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: GameLoop.java
+ * The GameLoop is the optional active rendering mode of the game (run it with "java Main --active-render").
+ * Normally PlayerPanel uses a Swing Timer and repaint(), but the Timer can only wait whole milliseconds (16ms instead of 16.67ms),
+ * and the Event Dispatch Thread can merge or delay repaint() requests whenever it's busy, which makes the player visibly stutter.
+ * Instead, the GameLoop has its own thread that updates PlayerPanel and then draws it right away, once every GameSimulation.TICK_NANOS.
+ * Drawing goes into a VolatileImage back buffer (which can live in video memory) that is then copied onto the panel in one go.
+ * The frames are timed against fixed deadlines from System.nanoTime(), so oversleeping one frame just makes the next wait less
+ * and the game doesn't slowly drift behind.
+ * With render interpolation ("java Main --interpolate", optionally with "--fps 144"), the ticks stay at 60 per second, but frames are drawn
+ * at the display's refresh rate instead. A frame drawn between two ticks shows the player part of the way between where they were
+ * after each of them (see PlayerPanel.render()), so on a 120/144/240 Hz display the movement looks as smooth as the display allows.
+ * This draws everything up to one tick behind the simulation, which is the usual price of interpolating.
+ * Note that PlayerPanel's update(), render(), and resetLevel() are synchronized, since the Event Dispatch Thread still resets levels
+ * when an upgrade is picked (and still paints the panel when the window is resized).
+*/
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.concurrent.locks.*;
+
+public class GameLoop implements Runnable
+{
+    // If the loop falls this far behind (e.g. the computer went to sleep), it skips ahead instead of rushing through all the missed frames.
+    private static final long MAX_LATE_NANOS = 5 * GameSimulation.TICK_NANOS;
+    // parkNanos() can oversleep by a millisecond or so, so the last bit before a deadline is waited out with Thread.yield() instead.
+    private static final long YIELD_NANOS = 1000000;
+    // Used for render interpolation when the display doesn't say what its refresh rate is.
+    private static final int DEFAULT_REFRESH_RATE = 120;
+
+    private PlayerPanel panel;
+    private volatile boolean running = false;
+    private Thread thread;
+    private VolatileImage backBuffer;
+    private int framesPerSecond; // 0 means one frame right after every tick, with no interpolation.
+
+    public GameLoop(PlayerPanel thePanel)
+    {
+        this(thePanel, 0);
+    }
+
+    public GameLoop(PlayerPanel thePanel, int theFramesPerSecond)
+    {
+        panel = thePanel;
+        framesPerSecond = theFramesPerSecond;
+    }
+
+    // The refresh rate of the display the component is on (or the main display if it isn't shown yet), for render interpolation.
+    public static int getRefreshRate(Component component)
+    {
+        GraphicsConfiguration configuration = component.getGraphicsConfiguration();
+        GraphicsDevice device = configuration != null ? configuration.getDevice()
+            : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+        int refreshRate = device.getDisplayMode().getRefreshRate();
+        return refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN ? refreshRate : DEFAULT_REFRESH_RATE;
+    }
+
+    public void start()
+    {
+        running = true;
+        thread = new Thread(this, "Game loop");
+        thread.setDaemon(true); // Don't keep the game running after the window is closed.
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    public void stop()
+    {
+        running = false;
+    }
+
+    public void run()
+    {
+        if (framesPerSecond > 0)
+        {
+            runInterpolated();
+            return;
+        }
+        long nextFrame = System.nanoTime();
+        while (running)
+        {
+            panel.update();
+            render(1);
+
+            nextFrame += GameSimulation.TICK_NANOS;
+            long now = System.nanoTime();
+            if (now - nextFrame > MAX_LATE_NANOS)
+            {
+                nextFrame = now;
+            }
+            waitUntil(nextFrame);
+            LatencyHistogram.LATENESS.record(System.nanoTime() - nextFrame);
+        }
+    }
+
+    // The ticks and the frames each have their own deadlines. Every frame first runs the ticks that are due (none, or more than one
+    // if frames are slower than ticks), then draws with how far it is from the last tick to the next one.
+    // That fraction is measured from when the last tick should have happened rather than when it did, so a tick that runs a little late
+    // (they only run when a frame comes around) doesn't make the player jump.
+    private void runInterpolated()
+    {
+        long frameNanos = 1000000000L / framesPerSecond;
+        long nextTick = System.nanoTime();
+        long nextFrame = nextTick;
+        while (running)
+        {
+            long now = System.nanoTime();
+            if (now - nextTick > MAX_LATE_NANOS)
+            {
+                nextTick = now;
+            }
+            while (now - nextTick >= 0)
+            {
+                panel.update();
+                nextTick += GameSimulation.TICK_NANOS;
+            }
+            double alpha = (double)(now - (nextTick - GameSimulation.TICK_NANOS)) / GameSimulation.TICK_NANOS;
+            render(Math.max(0, Math.min(1, alpha)));
+
+            nextFrame += frameNanos;
+            now = System.nanoTime();
+            if (now - nextFrame > MAX_LATE_NANOS)
+            {
+                nextFrame = now;
+            }
+            waitUntil(nextFrame);
+            LatencyHistogram.LATENESS.record(System.nanoTime() - nextFrame);
+        }
+    }
+
+    // alpha is how far the frame is from the last tick to the next one (see PlayerPanel.render()).
+    private void render(double alpha)
+    {
+        // Nothing is drawn while the UpgradePanel is showing instead.
+        int width = panel.getWidth();
+        int height = panel.getHeight();
+        GraphicsConfiguration configuration = panel.getGraphicsConfiguration();
+        if (!panel.isShowing() || width <= 0 || height <= 0 || configuration == null)
+        {
+            return;
+        }
+
+        // The contents of a VolatileImage can be lost at any time (e.g. when the screen mode changes), in which case the frame is drawn again.
+        do
+        {
+            if (backBuffer == null || backBuffer.getWidth() != width || backBuffer.getHeight() != height
+                || backBuffer.validate(configuration) == VolatileImage.IMAGE_INCOMPATIBLE)
+            {
+                backBuffer = configuration.createCompatibleVolatileImage(width, height);
+            }
+
+            Graphics2D g = backBuffer.createGraphics();
+            try
+            {
+                g.setColor(panel.getBackground());
+                g.fillRect(0, 0, width, height);
+                panel.render(g, alpha);
+            }
+            finally
+            {
+                g.dispose();
+            }
+
+            Graphics panelGraphics = panel.getGraphics();
+            if (panelGraphics == null)
+            {
+                return;
+            }
+            try
+            {
+                panelGraphics.drawImage(backBuffer, 0, 0, null);
+            }
+            finally
+            {
+                panelGraphics.dispose();
+            }
+        }
+        while (backBuffer.contentsLost());
+        Toolkit.getDefaultToolkit().sync(); // Some systems (Linux especially) otherwise hold on to the drawing for a while.
+    }
+
+    private void waitUntil(long deadline)
+    {
+        long waitTime = deadline - System.nanoTime();
+        while (waitTime > 0)
+        {
+            if (waitTime > YIELD_NANOS)
+            {
+                LockSupport.parkNanos(waitTime - YIELD_NANOS);
+            }
+            else
+            {
+                Thread.yield();
+            }
+            waitTime = deadline - System.nanoTime();
+        }
+    }
+}
\ No newline at end of file
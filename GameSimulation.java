@@ -0,0 +1,752 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: GameSimulation.java
+ * The GameSimulation class is the platforming engine of the game. It holds the player's state and the current level (a GameObjects object),
+ * and advances everything by exactly one tick each time tick() is called with a snapshot of the keys that are held.
+ * This includes the player's movement with all of their abilities, the pogo jump hits, reaching the goal, and dying to obstacles.
+ * Note that nothing here depends on Swing or the Timer in PlayerPanel (java.awt.Rectangle is only used as plain geometry and works headless).
+ * This means that the game can be simulated as fast as the CPU allows, e.g. for replays, bots and tests, without a display.
+ * PlayerPanel owns a GameSimulation, feeds it the keyboard input once per Timer tick, and then only draws its state.
+*/
+
+import java.awt.*;
+import java.util.*;
+
+public class GameSimulation
+{
+    // Bits for the input snapshot given to tick(). There is one bit for each key tracked by KeyInputs.
+    public static final int RIGHT = 1;
+    public static final int LEFT = 1 << 1;
+    public static final int UP = 1 << 2;
+    public static final int DOWN = 1 << 3;
+    public static final int Z = 1 << 4;
+    public static final int X = 1 << 5;
+    public static final int C = 1 << 6;
+    public static final int SPACE = 1 << 7;
+    public static final int B = 1 << 8;
+    public static final int D = 1 << 9;
+    public static final int P = 1 << 10;
+    public static final int R = 1 << 11;
+    public static final int F3 = 1 << 12; // Shows the latency overlay (see LatencyHistogram). It doesn't do anything in the simulation.
+    public static final int H = 1 << 13; // Shows the route hint (see RouteSolver). It doesn't do anything in the simulation either.
+
+    public static final int TICK_MILLIS = 1000 / 60; // How long one tick is in the game (the delay of the Timer in PlayerPanel).
+    // Timers only work in whole milliseconds, so the Timer actually ticks every 16ms (62.5 times a second). GameLoop can do exactly 60.
+    public static final long TICK_NANOS = 1000000000L / 60;
+
+    // Results of tick() that whoever runs the simulation may need to react to.
+    public static final int TICK_CONTINUE = 0;
+    public static final int TICK_LEVEL_RESET = 1; // The r key generated a new level.
+    public static final int TICK_GOAL = 2; // The goal was reached. Moving on to the next level is up to the caller.
+    public static final int TICK_DIED = 3; // The player touched an obstacle and was sent back to the start.
+
+    public static final int STATE_SIZE = 8; // How many longs saveState() uses.
+
+    // Special effects spawned during a tick are queued here as (ID, x, y, dash steps left) for whoever draws them.
+    // See ParticleSystem for the IDs. There can only be a handful of these per tick.
+    public static final int EFFECT_DATA_SIZE = 4;
+    private static final int MAX_EFFECTS_PER_TICK = 8;
+    private int[] spawnedEffects = new int[EFFECT_DATA_SIZE * MAX_EFFECTS_PER_TICK];
+    private int spawnedEffectCount = 0;
+
+    // The field size is used for the screen edges. A size of 0 means that it isn't known yet (see PlayerPanel) and the edge isn't enforced.
+    private int fieldWidth;
+    private int fieldHeight;
+    private int[] upgrades; // Same indices as Main.getUpgrades().
+    private MovementProfile profile; // What the upgrades do, worked out ahead of time. See updateMovementProfile().
+    private int level = 1;
+
+    private int playerX = 25;
+    private int playerY = 384;
+    private int playerSize = 16;
+    private double playerXV = 0;
+    private double playerYV = 0;
+    private Rectangle playerRect = new Rectangle(25, 384, 16, 16); // This rectangle (and some others) are used for collision detection.
+
+    private boolean onPlatform = false;
+    private int currentMidairJumps = 0;
+    private int currentMidairDashes = 0;
+    // The keys held during the last tick. Jumps, resets, dashes, and x actions only happen on the tick their key is first pressed, not while it's held.
+    private int previousKeys = 0;
+
+    private GameObjects gameObjects; // The red obstacles and the green goal are done in GameObjects.
+    private LevelPregenerator levelPregenerator; // Optional. If set, new levels are taken from it (see LevelPregenerator.take()).
+    private ReplayRecorder replayRecorder; // Optional. If set, every tick, level and field size change is recorded.
+    private ChunkedWorld world; // Optional. If set, the player is in this scrolling world instead of the level in gameObjects.
+    private LevelPack levelPack; // Optional. If set, levels are picked from this pack (when it has the level number) instead of generated.
+    private SplittableRandom levelPackRandom;
+
+    private double[] dashingData = new double[3]; // The indices are for: x velocity, y velocity, step()s left.
+
+    private Rectangle pogoHitbox = new Rectangle(30, 400, 6, 12);
+    private boolean pogoing = false;
+    private boolean pogoHit = false;
+    private int teleportPhase = 0; // Phase 0: initial state, nothing happens. Phase 1: The thing happens. Phase 2: The thing is over, nothing happens.
+    private Rectangle waypoint;
+    private int alignmentColumnPhase = 0; // See right above for the phase description (it's the same here).
+    private int leftAlignmentColumnX;
+    private int rightAlignmentColumnX;
+
+    public GameSimulation(int theFieldWidth, int theFieldHeight, int[] theUpgrades)
+    {
+        this(theFieldWidth, theFieldHeight, theUpgrades, new SplittableRandom().nextLong());
+    }
+
+    // The seed decides all of the levels that get generated (see GameObjects), so the same seed and inputs give the same run.
+    public GameSimulation(int theFieldWidth, int theFieldHeight, int[] theUpgrades, long seed)
+    {
+        fieldWidth = theFieldWidth;
+        fieldHeight = theFieldHeight;
+        upgrades = theUpgrades;
+        profile = MovementProfile.of(upgrades);
+        gameObjects = new GameObjects(seed);
+    }
+
+    // For simulating more of an existing level (e.g. to search it). No level is generated, and theGameObjects is shared, not copied.
+    public GameSimulation(int theFieldWidth, int theFieldHeight, int[] theUpgrades, GameObjects theGameObjects)
+    {
+        fieldWidth = theFieldWidth;
+        fieldHeight = theFieldHeight;
+        upgrades = theUpgrades;
+        profile = MovementProfile.of(upgrades);
+        gameObjects = theGameObjects;
+    }
+
+    public void resetLevel(int theLevel)
+    {
+        level = theLevel;
+        updateMovementProfile();
+        if (world != null)
+        {
+            // There's only one "level" in the scrolling world, so this starts a new world instead.
+            world.reset();
+            resetPlayer();
+            return;
+        }
+        resetPlayer();
+        if (levelPack != null && levelPack.getLevelCount(level) > 0)
+        {
+            levelPack.load(level, levelPackRandom.nextInt(levelPack.getLevelCount(level)), gameObjects);
+            return;
+        }
+        GameObjects readyLevel = null;
+        if (levelPregenerator != null)
+        {
+            // The upgrades go first, since take() only hands out levels that were checked with the ones the player has now.
+            levelPregenerator.setCurrentLevel(level, upgrades);
+            readyLevel = levelPregenerator.take(level);
+        }
+        if (readyLevel != null)
+        {
+            levelPregenerator.recycle(gameObjects); // The old level won't be used again, so a later level can be generated into it.
+            gameObjects = readyLevel;
+        }
+        else
+        {
+            gameObjects.generateLevel(level);
+        }
+        if (replayRecorder != null)
+        {
+            replayRecorder.recordLevel(level, gameObjects.getLevelSeed());
+        }
+    }
+
+    // Same as above, but with a specific level seed (e.g. one that was recorded earlier with getGameObjects().getLevelSeed()).
+    public void resetLevel(int theLevel, long levelSeed)
+    {
+        level = theLevel;
+        updateMovementProfile();
+        resetPlayer();
+        gameObjects.generateLevel(level, levelSeed);
+        if (replayRecorder != null)
+        {
+            replayRecorder.recordLevel(level, levelSeed);
+        }
+    }
+
+    // Works out the movement profile again from the upgrade array. Upgrades are only picked between levels
+    // (e.g. UpgradePanel.actionPerformed() changes Main.getUpgrades() and then resets the level), so resetLevel() does this already.
+    // Anything that changes the upgrades in the middle of a level has to call this itself.
+    public void updateMovementProfile()
+    {
+        profile = MovementProfile.of(upgrades);
+    }
+
+    public void resetPlayer()
+    {
+        playerX = 25;
+        playerY = 384;
+        if (world != null)
+        {
+            playerX += world.getCheckpointX();
+        }
+        playerRect.setLocation(playerX, playerY); // Dealing with the bug related to level completion upon player reset.
+        playerXV = 0;
+        playerYV = 0;
+        onPlatform = true;
+        currentMidairJumps = 0;
+        currentMidairDashes = 0;
+        dashingData = new double[3];
+        pogoing = false;
+        pogoHit = false;
+        teleportPhase = 0;
+        alignmentColumnPhase = 0;
+    }
+
+    // Advances the game by one tick. keys is a combination of the input bits above for the keys that are currently held.
+    // Returns one of the TICK_ results.
+    public int tick(int keys)
+    {
+        spawnedEffectCount = 0;
+        if (replayRecorder != null)
+        {
+            replayRecorder.recordTick(keys);
+        }
+
+        // Keys that weren't held last tick. Jumps, resets, dashes, and x actions generally aren't meant to work while held, only when pressed.
+        int pressedKeys = keys & ~previousKeys;
+
+        // The upgrades related to pressing "c" (see MovementProfile for the numbers).
+        boolean boosted = (keys & C) != 0;
+        double gravityYVmultiplier = profile.getGravityMultiplier(boosted);
+
+        // These variables find the net tilt from the arrow keys (used for "directional input").
+        int horizontalTilt = 0;
+        int verticalTilt = 0;
+
+        if ((keys & RIGHT) != 0)
+        {
+            playerXV += profile.getRunAcceleration(boosted);
+            horizontalTilt++;
+        }
+        if ((keys & LEFT) != 0)
+        {
+            playerXV -= profile.getRunAcceleration(boosted);
+            horizontalTilt--;
+        }
+        if ((pressedKeys & Z) != 0)
+        {
+            dashingData[2] = 0; // Dashes can be canceled by jumps (not necessarily pogo jumps though).
+            if (onPlatform)
+            {
+                playerYV = profile.getJumpVelocity(boosted);
+                spawnEffect(0);
+            }
+            else if (currentMidairJumps < profile.getMidairJumps())
+            {
+                playerYV = profile.getJumpVelocity(boosted);
+                currentMidairJumps++;
+                spawnEffect(0);
+            }
+        }
+        if ((keys & UP) != 0)
+        {
+            verticalTilt++;
+        }
+        if ((keys & DOWN) != 0)
+        {
+            verticalTilt--;
+        }
+
+        // Level reset.
+        if ((pressedKeys & R) != 0)
+        {
+            previousKeys = keys; // There's a need for a copy of this here to make sure things are updating in BOTH cases (pressed and not pressed).
+            resetLevel(level);
+            return TICK_LEVEL_RESET;
+        }
+
+        // Pogo Jump (key x) that uses down tilt.
+        // Note: I never said that pogo jumps cancel dashes, only that jumps cancel dashes.
+        if ((keys & X) != 0)
+        {
+            if (profile.hasPogo() && verticalTilt == -1)
+            {
+                pogoing = true;
+                // The rest of pogo jump is dealt with at the end of the tick.
+            }
+            else
+            {
+                pogoing = false;
+                pogoHit = false;
+            }
+        }
+        else
+        {
+            // Pogo Release upgrade.
+            if (profile.hasPogoRelease() && pogoing && pogoHit)
+            {
+                playerYV = -6.0;
+            }
+
+            pogoing = false;
+            pogoHit = false;
+        }
+
+        // Portable Waypoint (key x) that uses neutral tilt (both or neither up and down).
+        if ((pressedKeys & X) != 0)
+        {
+            if (profile.hasWaypoint() && verticalTilt == 0)
+            {
+                if (teleportPhase == 0)
+                {
+                    waypoint = new Rectangle(playerX, playerY, playerSize, playerSize);
+                    teleportPhase++;
+                }
+                else if (teleportPhase == 1)
+                {
+                    spawnEffect(2);
+                    playerX = waypoint.x;
+                    playerY = waypoint.y;
+                    spawnEffect(2);
+                    playerXV = 0;
+                    playerYV = 0;
+                    teleportPhase++;
+                }
+            }
+        }
+
+        // Alignment Column (key x) that uses up tilt.
+        if ((pressedKeys & X) != 0)
+        {
+            if (profile.hasAlignmentColumns() && verticalTilt == 1)
+            {
+                if (alignmentColumnPhase == 0)
+                {
+                    leftAlignmentColumnX = playerX + (playerSize / 2) - 16;
+                    rightAlignmentColumnX = playerX + (playerSize / 2) + 16;
+                    alignmentColumnPhase++;
+                }
+                else if (alignmentColumnPhase == 1)
+                {
+                    alignmentColumnPhase++;
+                }
+            }
+        }
+        if (profile.hasUfoBeam() && alignmentColumnPhase == 1) // UFO Beam upgrade to Alignment Column.
+        {
+            gravityYVmultiplier -= 0.4;
+        }
+
+        // Various dashes (space bar) that are based on tilt: horizontal dashes, omnidirectional dashes (also invincible ones), and teleports.
+        // Which directions work and how fast or far each one goes is all in the movement profile.
+        int tiltIndex = MovementProfile.getTiltIndex(horizontalTilt, verticalTilt);
+        if ((pressedKeys & SPACE) != 0 && profile.getDashes() > 0 && (onPlatform || currentMidairDashes < profile.getDashes())
+            && profile.isDashPossible(tiltIndex))
+        {
+            if (!onPlatform)
+            {
+                currentMidairDashes++;
+            }
+            if (profile.getDashKind() != MovementProfile.DASH_TELEPORT)
+            {
+                dashingData[0] = profile.getDashXV(tiltIndex);
+                dashingData[1] = profile.getDashYV(tiltIndex);
+                dashingData[2] = 12;
+                // Invincibility while dashing is implemented at the collision detection code at the end of the tick.
+            }
+            else
+            {
+                spawnEffect(2);
+                playerX += profile.getTeleportX(tiltIndex);
+                playerY += profile.getTeleportY(tiltIndex);
+                spawnEffect(2);
+                playerXV = 0;
+                playerYV = 0;
+            }
+        }
+
+        // Reminder: Jumps, resets, dashes, and x actions generally aren't meant to work while held, only when pressed.
+        previousKeys = keys;
+
+        // Dashes override typical movement. Some of those details are done here.
+        if (dashingData[2] > 0)
+        {
+            playerXV = dashingData[0];
+            playerYV = dashingData[1];
+            dashingData[2]--;
+            if (dashingData[2] % 4 == 0)
+            {
+                spawnEffect(1);
+            }
+            // A nerf to the end speed from vertical dashes.
+            if (dashingData[2] == 0)
+            {
+                playerYV /= 2;
+            }
+        }
+
+        // Where this tick's movement starts, for the swept collision checks at the end of the tick.
+        // Teleports (and the waypoint) already happened above, so they jump straight past obstacles like they're meant to.
+        int startX = playerX;
+        int startY = playerY;
+
+        // Player acceleration and friction.
+        playerXV *= 0.85;
+        playerX += (int)(playerXV);
+        playerY += (int)(playerYV);
+
+        // Code to prevent the player from escaping the alignment columns.
+        if (alignmentColumnPhase == 1)
+        {
+            playerX = Math.max(playerX, leftAlignmentColumnX);
+            playerX = Math.min(playerX, rightAlignmentColumnX - playerSize);
+        }
+
+        // Adjusting player coordinates based on screen edge.
+        if (playerX <= 0)
+        {
+            playerX = 0;
+        }
+        if (playerY <= 0)
+        {
+            playerY = 0;
+        }
+        if (fieldWidth != 0 && playerX >= fieldWidth - playerSize)
+        {
+            playerX = fieldWidth - playerSize;
+        }
+        if (fieldHeight != 0 && playerY >= fieldHeight - playerSize)
+        {
+            playerY = fieldHeight - playerSize;
+            // Note: If more platforms are added, this onPlatform stuff needs to be moved.
+            onPlatform = true;
+            currentMidairJumps = 0;
+            currentMidairDashes = 0;
+            pogoing = false;
+            pogoHit = false;
+        }
+        else // Simulating gravity.
+        {
+            if (playerYV < 0) // Upwards velocity.
+            {
+                playerYV += 0.3;
+            }
+            else if (playerYV > 3 * gravityYVmultiplier) // High downwards velocity.
+            {
+                // If slow fall is off, accelerate at a slower rate. If slow fall is on, there's a hard limit to downward acceleration.
+                if (gravityYVmultiplier == 1)
+                {
+                    playerYV += Math.max(0, 0.15 * gravityYVmultiplier);
+                }
+                else
+                {
+                    playerYV = 3 * gravityYVmultiplier;
+                }
+            }
+            else // Low downwards velocity.
+            {
+                playerYV += Math.max(0, 0.3 * gravityYVmultiplier);
+            }
+            onPlatform = false;
+        }
+
+        playerRect.setLocation(playerX, playerY);
+        if (world != null)
+        {
+            world.update(playerX);
+        }
+
+        // Pogo jump hits. A hit makes the player bounce on the next tick.
+        pogoHitbox.setLocation(playerRect.x + (playerSize - 6) / 2 , playerRect.y + 16);
+        if (pogoing && (world != null ? world.intersectsObstacle(pogoHitbox) : gameObjects.intersectsObstacle(pogoHitbox)))
+        {
+            playerYV = -3.9;
+            pogoHit = true;
+        }
+
+        // The goal and obstacles are checked along the whole move from (startX, startY), not just where the player ends up.
+        // Otherwise, fast moves (dashes, sprinting) could skip over thin obstacles or the goal between two ticks.
+        // Whatever is touched first wins, and the goal wins ties (meaning that goal has priority, like before).
+        int moveX = playerX - startX;
+        int moveY = playerY - startY;
+        // The scrolling world doesn't have a goal.
+        double goalTime = world != null ? GameObjects.NO_HIT : gameObjects.sweepGoal(startX, startY, playerSize, playerSize, moveX, moveY);
+        double obstacleTime = GameObjects.NO_HIT;
+        // If the player is invincible (from dashing), obstacles don't matter.
+        if (!(profile.hasInvincibleDash() && dashingData[2] > 0))
+        {
+            if (world != null)
+            {
+                obstacleTime = world.sweepObstacles(startX, startY, playerSize, playerSize, moveX, moveY);
+            }
+            else
+            {
+                obstacleTime = gameObjects.sweepObstacles(startX, startY, playerSize, playerSize, moveX, moveY);
+            }
+        }
+
+        // Check if goal reached.
+        if (goalTime != GameObjects.NO_HIT && goalTime <= obstacleTime)
+        {
+            return TICK_GOAL;
+        }
+
+        // Check if the player hit an obstacle.
+        if (obstacleTime != GameObjects.NO_HIT)
+        {
+            resetPlayer();
+            return TICK_DIED;
+        }
+
+        return TICK_CONTINUE;
+    }
+
+    // The player's state can be saved into STATE_SIZE longs and loaded again later, e.g. to try out different inputs from the same spot.
+    // The level, upgrades, and field size aren't part of it.
+    public void saveState(long[] state, int offset)
+    {
+        state[offset] = ((long)playerX << 32) | (playerY & 0xFFFFFFFFL);
+        state[offset + 1] = Double.doubleToRawLongBits(playerXV);
+        state[offset + 2] = Double.doubleToRawLongBits(playerYV);
+        state[offset + 3] = Double.doubleToRawLongBits(dashingData[0]);
+        state[offset + 4] = Double.doubleToRawLongBits(dashingData[1]);
+        long flags = 0;
+        flags |= onPlatform ? 1 : 0;
+        flags |= pogoing ? 32 : 0;
+        flags |= pogoHit ? 64 : 0;
+        flags |= (long)currentMidairJumps << 8;
+        flags |= (long)currentMidairDashes << 16;
+        flags |= (long)dashingData[2] << 24; // The dash steps left are always a whole number.
+        flags |= (long)teleportPhase << 32;
+        flags |= (long)alignmentColumnPhase << 40;
+        flags |= (long)previousKeys << 48;
+        state[offset + 5] = flags;
+        state[offset + 6] = waypoint == null ? 0 : ((long)waypoint.x << 32) | (waypoint.y & 0xFFFFFFFFL);
+        state[offset + 7] = ((long)leftAlignmentColumnX << 32) | (rightAlignmentColumnX & 0xFFFFFFFFL);
+    }
+
+    public void loadState(long[] state, int offset)
+    {
+        playerX = (int)(state[offset] >> 32);
+        playerY = (int)state[offset];
+        playerXV = Double.longBitsToDouble(state[offset + 1]);
+        playerYV = Double.longBitsToDouble(state[offset + 2]);
+        dashingData[0] = Double.longBitsToDouble(state[offset + 3]);
+        dashingData[1] = Double.longBitsToDouble(state[offset + 4]);
+        long flags = state[offset + 5];
+        onPlatform = (flags & 1) != 0;
+        pogoing = (flags & 32) != 0;
+        pogoHit = (flags & 64) != 0;
+        currentMidairJumps = (int)((flags >> 8) & 0xFF);
+        currentMidairDashes = (int)((flags >> 16) & 0xFF);
+        dashingData[2] = (int)((flags >> 24) & 0xFF);
+        teleportPhase = (int)((flags >> 32) & 0xFF);
+        alignmentColumnPhase = (int)((flags >> 40) & 0xFF);
+        previousKeys = (int)((flags >> 48) & 0xFFFF);
+        if (teleportPhase > 0)
+        {
+            if (waypoint == null)
+            {
+                waypoint = new Rectangle(0, 0, playerSize, playerSize);
+            }
+            waypoint.setLocation((int)(state[offset + 6] >> 32), (int)state[offset + 6]);
+        }
+        leftAlignmentColumnX = (int)(state[offset + 7] >> 32);
+        rightAlignmentColumnX = (int)state[offset + 7];
+        playerRect.setLocation(playerX, playerY);
+        pogoHitbox.setLocation(playerRect.x + (playerSize - 6) / 2 , playerRect.y + 16);
+    }
+
+    // A rough summary of the player's state for searches (see LevelVerifier). States with the same key are treated as the same.
+    // Positions are exact, velocities are rounded to 1/64 of a pixel per tick, and the waypoint and alignment columns are left out.
+    public long getSearchKey()
+    {
+        long key = 1; // Never 0, since LevelVerifier uses 0 for empty slots.
+        key = (key << 10) | (playerX & 0x3FF);
+        key = (key << 10) | (playerY & 0x3FF);
+        key = (key << 11) | (Math.max(-1024, Math.min(1023, Math.round(playerXV * 64))) & 0x7FF);
+        key = (key << 11) | (Math.max(-1024, Math.min(1023, Math.round(playerYV * 64))) & 0x7FF);
+        key = (key << 3) | (currentMidairJumps & 0x7);
+        key = (key << 2) | (currentMidairDashes & 0x3);
+        key = (key << 4) | ((int)dashingData[2] & 0xF);
+        key = (key << 2) | ((int)Math.signum(dashingData[0]) + 1);
+        key = (key << 2) | ((int)Math.signum(dashingData[1]) + 1);
+        key = (key << 1) | (onPlatform ? 1 : 0);
+        key = (key << 1) | ((previousKeys & Z) != 0 ? 1 : 0);
+        key = (key << 1) | ((previousKeys & SPACE) != 0 ? 1 : 0);
+        key = (key << 1) | ((previousKeys & X) != 0 ? 1 : 0);
+        key = (key << 1) | (pogoing ? 1 : 0);
+        key = (key << 1) | (pogoHit ? 1 : 0);
+        return key;
+    }
+
+    // Queues a special effect at the player's current location.
+    private void spawnEffect(int ID)
+    {
+        if (spawnedEffectCount == MAX_EFFECTS_PER_TICK)
+        {
+            return;
+        }
+        int index = EFFECT_DATA_SIZE * spawnedEffectCount;
+        spawnedEffects[index] = ID;
+        spawnedEffects[index + 1] = playerX;
+        spawnedEffects[index + 2] = playerY;
+        spawnedEffects[index + 3] = (int)(dashingData[2]);
+        spawnedEffectCount++;
+    }
+
+    public void setLevelPregenerator(LevelPregenerator theLevelPregenerator)
+    {
+        levelPregenerator = theLevelPregenerator;
+        levelPregenerator.setCurrentLevel(level, upgrades); // So that it can start on the right levels before the next resetLevel().
+    }
+
+    // Starts recording into the given (already started) recorder, beginning with the current field size and level.
+    public void setReplayRecorder(ReplayRecorder theReplayRecorder)
+    {
+        replayRecorder = theReplayRecorder;
+        if (replayRecorder != null)
+        {
+            replayRecorder.recordFieldSize(fieldWidth, fieldHeight);
+            replayRecorder.recordLevel(level, gameObjects.getLevelSeed());
+        }
+    }
+
+    // Picks levels from the given pack from now on. The seed decides which levels of the pack get picked.
+    // Levels from a pack have no seed, so replays can't play them again, and this shouldn't be used together with a ReplayRecorder.
+    public void setLevelPack(LevelPack theLevelPack, long seed)
+    {
+        levelPack = theLevelPack;
+        levelPackRandom = new SplittableRandom(seed);
+    }
+
+    // Switches to the scrolling world mode (see ChunkedWorld). The field width should be 0 then, since the world has no right edge.
+    // Replays don't support the world mode, so this shouldn't be used together with a ReplayRecorder.
+    public void setWorld(ChunkedWorld theWorld)
+    {
+        world = theWorld;
+        resetPlayer();
+    }
+
+    public void setFieldSize(int theFieldWidth, int theFieldHeight)
+    {
+        if (replayRecorder != null && (theFieldWidth != fieldWidth || theFieldHeight != fieldHeight))
+        {
+            replayRecorder.recordFieldSize(theFieldWidth, theFieldHeight);
+        }
+        fieldWidth = theFieldWidth;
+        fieldHeight = theFieldHeight;
+    }
+
+    // The effects spawned during the last tick, EFFECT_DATA_SIZE ints each.
+    public int[] getSpawnedEffects()
+    {
+        return spawnedEffects;
+    }
+
+    public int getSpawnedEffectCount()
+    {
+        return spawnedEffectCount;
+    }
+
+    public int getLevel()
+    {
+        return level;
+    }
+
+    public int[] getUpgrades()
+    {
+        return upgrades;
+    }
+
+    public GameObjects getGameObjects()
+    {
+        return gameObjects;
+    }
+
+    public ChunkedWorld getWorld()
+    {
+        return world;
+    }
+
+    public int getPlayerX()
+    {
+        return playerX;
+    }
+
+    public int getPlayerY()
+    {
+        return playerY;
+    }
+
+    public int getPlayerSize()
+    {
+        return playerSize;
+    }
+
+    public double getPlayerXV()
+    {
+        return playerXV;
+    }
+
+    public double getPlayerYV()
+    {
+        return playerYV;
+    }
+
+    public Rectangle getPlayerRect()
+    {
+        return playerRect;
+    }
+
+    public Rectangle getPogoHitbox()
+    {
+        return pogoHitbox;
+    }
+
+    public boolean isPogoing()
+    {
+        return pogoing;
+    }
+
+    public MovementProfile getMovementProfile()
+    {
+        return profile;
+    }
+
+    // How many of the midair jumps and dashes allowed by the upgrades have been used since the player was last on the ground.
+    public int getMidairJumpsUsed()
+    {
+        return currentMidairJumps;
+    }
+
+    public int getMidairDashesUsed()
+    {
+        return currentMidairDashes;
+    }
+
+    // How many more ticks the current dash lasts (0 when not dashing).
+    public int getDashStepsLeft()
+    {
+        return (int)dashingData[2];
+    }
+
+    public int getTeleportPhase()
+    {
+        return teleportPhase;
+    }
+
+    public Rectangle getWaypoint()
+    {
+        return waypoint;
+    }
+
+    public int getAlignmentColumnPhase()
+    {
+        return alignmentColumnPhase;
+    }
+
+    public int getLeftAlignmentColumnX()
+    {
+        return leftAlignmentColumnX;
+    }
+
+    public int getRightAlignmentColumnX()
+    {
+        return rightAlignmentColumnX;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: InputSnapshot.java
+ * An InputSnapshot is the state of the keyboard for one tick, taken by KeyInputs.takeSnapshot().
+ * It can't change after it's made, so everything that looks at the keys during a tick sees the same keys.
+ * The keys are GameSimulation input bits, and more than one key can be checked at once (e.g. isHeld(GameSimulation.LEFT | GameSimulation.RIGHT)).
+ * Pressed keys are the held keys that weren't held in the previous snapshot, and released keys are the other way around.
+*/
+
+public class InputSnapshot
+{
+    private final int held;
+    private final int pressed;
+    private final int released;
+
+    public InputSnapshot(int heldKeys, int previousHeldKeys)
+    {
+        held = heldKeys;
+        pressed = heldKeys & ~previousHeldKeys;
+        released = previousHeldKeys & ~heldKeys;
+    }
+
+    // Whether any of the given keys are held.
+    public boolean isHeld(int keys)
+    {
+        return (held & keys) != 0;
+    }
+
+    // Whether any of the given keys were pressed this tick.
+    public boolean wasPressed(int keys)
+    {
+        return (pressed & keys) != 0;
+    }
+
+    // Whether any of the given keys were released this tick.
+    public boolean wasReleased(int keys)
+    {
+        return (released & keys) != 0;
+    }
+
+    public int getHeld()
+    {
+        return held;
+    }
+
+    public int getPressed()
+    {
+        return pressed;
+    }
+
+    public int getReleased()
+    {
+        return released;
+    }
+}
\ No newline at end of file
@@ -9,29 +9,20 @@
  * Essentially, if these KeyListener methods were placed in PlayerPanel, the CardLayout switching would disable keyboard inputs while UpgradePanel showed.
  * That lead to various bugs. So instead, a KeyInputs object is an instance variable in Main.
  * This works since Main is the class managing the CardLayout switching and thus isn't affected by it.
+ * The held keys are kept as GameSimulation input bits in one AtomicInteger. The key events come in on the Event Dispatch Thread,
+ * but the game may read them from another thread (see GameLoop), and an atomic makes sure it always sees the latest keys.
+ * Once per tick, takeSnapshot() reads all of them at once into an InputSnapshot, which also knows which keys were just pressed or released.
 */
 
-import java.awt.*;
 import java.awt.event.*;
-import javax.swing.*;
-import javax.swing.Timer;
-import java.util.*;
+import java.util.concurrent.atomic.*;
 
 public class KeyInputs implements KeyListener
 {
-    // It may be more accurate to say that these booleans track when a key is held.
-    private boolean rightPressed = false;
-    private boolean leftPressed = false;
-    private boolean upPressed = false;
-    private boolean downPressed = false;
-    private boolean zPressed = false;
-    private boolean xPressed = false;
-    private boolean cPressed = false;
-    private boolean spacePressed = false;
-    private boolean bPressed = false;
-    private boolean dPressed = false;
-    private boolean pPressed = false;
-    private boolean rPressed = false;
+    private AtomicInteger heldKeys = new AtomicInteger();
+    // Keys pressed since the last snapshot. A key that is pressed and let go between two ticks still counts as held for one tick this way.
+    private AtomicInteger tappedKeys = new AtomicInteger();
+    private int previousKeys = 0; // The held keys of the last snapshot. Only used by whoever takes the snapshots.
 
     public KeyInputs()
     {
@@ -43,128 +34,67 @@ public class KeyInputs implements KeyListener
 
     public void keyPressed(KeyEvent e)
     {
-        if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-            rightPressed = true;
-        } 
-        else if (e.getKeyCode() == KeyEvent.VK_LEFT) {
-            leftPressed = true;
-        } 
-        else if (e.getKeyCode() == KeyEvent.VK_UP) {
-            upPressed = true;
-        } 
-        else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
-            downPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_Z) {
-            zPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_X) {
-            xPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_C) {
-            cPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-            spacePressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_B) {
-            bPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_D) {
-            dPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_P) {
-            pPressed = true;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_R) {
-            rPressed = true;
-        }
-        else {
+        int keyBit = getKeyBit(e.getKeyCode());
+        if (keyBit != 0)
+        {
+            heldKeys.accumulateAndGet(keyBit, (keys, tempBit) -> keys | tempBit);
+            tappedKeys.accumulateAndGet(keyBit, (keys, tempBit) -> keys | tempBit);
         }
     }
 
     public void keyReleased(KeyEvent e)
     {
-        if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-            rightPressed = false;
-        } 
-        else if (e.getKeyCode() == KeyEvent.VK_LEFT) {
-            leftPressed = false;
-        } 
-        else if (e.getKeyCode() == KeyEvent.VK_UP) {
-            upPressed = false;
-        } 
-        else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
-            downPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_Z) {
-            zPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_X) {
-            xPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_C) {
-            cPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-            spacePressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_B) {
-            bPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_D) {
-            dPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_P) {
-            pPressed = false;
-        }
-        else if (e.getKeyCode() == KeyEvent.VK_R) {
-            rPressed = false;
-        }
-        else {
+        int keyBit = getKeyBit(e.getKeyCode());
+        if (keyBit != 0)
+        {
+            heldKeys.accumulateAndGet(keyBit, (keys, tempBit) -> keys & ~tempBit);
         }
     }
     
-    public boolean getIfPressed(String key)
+    // The GameSimulation input bit for a key code, or 0 for keys that the game doesn't use.
+    private static int getKeyBit(int keyCode)
     {
-        if (key.equals("right")) {
-            return rightPressed;
-        } 
-        else if (key.equals("left")) {
-            return leftPressed;
-        } 
-        else if (key.equals("up")) {
-            return upPressed;
-        } 
-        else if (key.equals("down")) {
-            return downPressed;
-        }
-        else if (key.equals("z")) {
-            return zPressed;
-        }
-        else if (key.equals("x")) {
-            return xPressed;
-        }
-        else if (key.equals("c")) {
-            return cPressed;
-        }
-        else if (key.equals("space")) {
-            return spacePressed;
-        }
-        else if (key.equals("b")) {
-            return bPressed;
-        }
-        else if (key.equals("d")) {
-            return dPressed;
-        }
-        else if (key.equals("p")) {
-            return pPressed;
-        }
-        else if (key.equals("r")) {
-            return rPressed;
-        }
-        else{
-            return false;
+        switch (keyCode)
+        {
+            case KeyEvent.VK_RIGHT:
+                return GameSimulation.RIGHT;
+            case KeyEvent.VK_LEFT:
+                return GameSimulation.LEFT;
+            case KeyEvent.VK_UP:
+                return GameSimulation.UP;
+            case KeyEvent.VK_DOWN:
+                return GameSimulation.DOWN;
+            case KeyEvent.VK_Z:
+                return GameSimulation.Z;
+            case KeyEvent.VK_X:
+                return GameSimulation.X;
+            case KeyEvent.VK_C:
+                return GameSimulation.C;
+            case KeyEvent.VK_SPACE:
+                return GameSimulation.SPACE;
+            case KeyEvent.VK_B:
+                return GameSimulation.B;
+            case KeyEvent.VK_D:
+                return GameSimulation.D;
+            case KeyEvent.VK_P:
+                return GameSimulation.P;
+            case KeyEvent.VK_R:
+                return GameSimulation.R;
+            case KeyEvent.VK_F3:
+                return GameSimulation.F3;
+            case KeyEvent.VK_H:
+                return GameSimulation.H;
+            default:
+                return 0;
         }
     }
+    
+    // Reads the keys for one tick. This should be called once per tick, always from the same thread.
+    public InputSnapshot takeSnapshot()
+    {
+        int keys = heldKeys.get() | tappedKeys.getAndSet(0);
+        InputSnapshot snapshot = new InputSnapshot(keys, previousKeys);
+        previousKeys = keys;
+        return snapshot;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LatencyHistogram.java
+ * A LatencyHistogram counts how long something took (in nanoseconds) so that the slow cases can be found, not just the average.
+ * The game always keeps four of them: TICK (PlayerPanel.step()), PAINT (PlayerPanel.render()), GENERATION (GameObjects.generateLevel()),
+ * and LATENESS (how late the Timer or GameLoop started a frame compared to when it was supposed to).
+ * Press F3 in the game to see them, and they're written to the latency folder when the game closes.
+ *
+ * Durations go into log-scale buckets: every power of 2 is split into 16 equal buckets, so a bucket is never more than 1/16 (6.25%)
+ * wider than the values in it, from 1ns up to hundreds of years. That's 960 buckets, and recording a duration is just finding
+ * its bucket with a few bit operations and one atomic increment. Nothing is allocated, so it's cheap enough to always be on.
+ * Percentiles are the top of the bucket they fall into, so they can be slightly too high but never too low.
+*/
+
+import java.io.*;
+import java.nio.file.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+public class LatencyHistogram
+{
+    public static final LatencyHistogram TICK = new LatencyHistogram("tick");
+    public static final LatencyHistogram PAINT = new LatencyHistogram("paint");
+    public static final LatencyHistogram GENERATION = new LatencyHistogram("generation");
+    public static final LatencyHistogram LATENESS = new LatencyHistogram("lateness");
+    private static final LatencyHistogram[] ALL = {TICK, PAINT, GENERATION, LATENESS};
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private String name;
+    private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private AtomicLong totalCount = new AtomicLong();
+    private AtomicLong totalNanos = new AtomicLong();
+    private AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String theName)
+    {
+        name = theName;
+    }
+
+    // Adds one duration. Any thread can call this at any time.
+    public void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        counts.getAndIncrement(getBucket(nanos));
+        totalCount.getAndIncrement();
+        totalNanos.getAndAdd(nanos);
+        if (nanos > maxNanos.get())
+        {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    // Values below 16 get their own bucket. Above that, the bucket comes from the position of the highest bit (which power of 2)
+    // and the 4 bits right below it (which sixteenth of that power of 2).
+    private static int getBucket(long nanos)
+    {
+        if (nanos < SUB_BUCKETS)
+        {
+            return (int)nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // The smallest value that goes into the given bucket.
+    private static long getBucketStart(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    // The duration that the given fraction (e.g. 0.99) of all recorded durations are at or below.
+    public long getPercentile(double fraction)
+    {
+        long total = totalCount.get();
+        if (total == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long)Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            seen += counts.get(i);
+            if (seen >= target)
+            {
+                long bucketEnd = i + 1 < BUCKET_COUNT ? getBucketStart(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(bucketEnd, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getCount()
+    {
+        return totalCount.get();
+    }
+
+    public long getMax()
+    {
+        return maxNanos.get();
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    // One line like "tick: n=3600 mean=0.05ms p50=0.04ms p99=0.12ms p99.9=0.30ms max=1.20ms".
+    public String getSummary()
+    {
+        long total = totalCount.get();
+        return name + ": n=" + total + " mean=" + formatMillis(total == 0 ? 0 : totalNanos.get() / total)
+            + " p50=" + formatMillis(getPercentile(0.5)) + " p99=" + formatMillis(getPercentile(0.99))
+            + " p99.9=" + formatMillis(getPercentile(0.999)) + " max=" + formatMillis(maxNanos.get());
+    }
+
+    private static String formatMillis(long nanos)
+    {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    public static LatencyHistogram[] getAll()
+    {
+        return ALL;
+    }
+
+    // Writes the summary and the non-empty buckets (as "bucket start in ns,count") of every histogram to a new file in the latency folder.
+    // Returns the file, or null if it couldn't be written.
+    public static Path dumpAll()
+    {
+        String fileName = "latency-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt";
+        Path path = Paths.get("latency", fileName);
+        try
+        {
+            Files.createDirectories(path.getParent());
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path)))
+            {
+                for (LatencyHistogram histogram : ALL)
+                {
+                    writer.println(histogram.getSummary());
+                }
+                for (LatencyHistogram histogram : ALL)
+                {
+                    writer.println();
+                    writer.println("# " + histogram.getName());
+                    for (int i = 0; i < BUCKET_COUNT; i++)
+                    {
+                        long count = histogram.counts.get(i);
+                        if (count > 0)
+                        {
+                            writer.println(getBucketStart(i) + "," + count);
+                        }
+                    }
+                }
+            }
+            return path;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not write the latency histograms to " + path + ": " + e);
+            return null;
+        }
+    }
+}
\ No newline at end of file
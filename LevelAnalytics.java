@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LevelAnalytics.java
+ * LevelAnalytics generates a huge number of levels for every level number (1 to 29) and writes statistics about them as CSV files,
+ * so that the difficulty numbers in GameObjects.generateLevel() (like the 2.6 per level and the row chances) can be tuned from data
+ * instead of only from playing:
+ *     java LevelAnalytics [levels per level number] [threads] [seed] [output folder]
+ * The levels are never kept. Each one is added into an Accumulator (a few fixed-size arrays of counts) and then thrown away,
+ * so a million levels take the same memory as ten. The work is split into fixed chunks with their own seeds and GameObjects,
+ * which run on a thread pool and get merged at the end. Because the chunks don't depend on the number of threads,
+ * the same seed always gives the same numbers.
+ *
+ * The files written to the output folder (for every level number):
+ * - summary.csv: the average, standard deviation, minimum, median, and maximum of the obstacle count and of the covered cells,
+ *   the average number of cells covered by more than one obstacle, and the average goal row.
+ * - distributions.csv: how many levels had each obstacle count and each number of covered cells.
+ * - heatmap.csv: the fraction of levels in which each of the 16x16 cells is covered.
+ * - goals.csv: the fraction of levels with the goal in each row, which is how high the goal is (row 0 is the top).
+*/
+
+import java.awt.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class LevelAnalytics
+{
+    private static final int LEVEL_COUNT = GameObjects.FINAL_LEVEL - 1; // Level 30 has no obstacles, so it isn't worth looking at.
+    private static final int CELL_COUNT = GameObjects.GRID_SIZE * GameObjects.GRID_SIZE;
+    private static final int MAX_OBSTACLES = 256; // Obstacle counts above this are counted as this (they don't happen, though).
+    private static final int CHUNK_SIZE = 1 << 16; // Levels per task.
+
+    private int levelsPerNumber;
+    private long seed;
+    private Accumulator[] results = new Accumulator[LEVEL_COUNT + 1]; // Index i is for level i.
+
+    public LevelAnalytics(int theLevelsPerNumber, long theSeed)
+    {
+        levelsPerNumber = theLevelsPerNumber;
+        seed = theSeed;
+    }
+
+    // All of the statistics for the levels of one level number. Everything in here is a count or a sum, so two Accumulators
+    // of the same level number can be merged by adding them up.
+    public static class Accumulator
+    {
+        private long levels = 0;
+        private long[] obstacleCounts = new long[MAX_OBSTACLES + 1]; // Index n is how many levels had n obstacles.
+        private long[] coveredCounts = new long[CELL_COUNT + 1]; // Index n is how many levels had n covered cells.
+        private long[] cellCounts = new long[CELL_COUNT]; // Index x + 16 * y is how many levels had cell (x, y) covered.
+        private long[] goalRows = new long[GameObjects.GRID_SIZE];
+        private long overlapCells = 0; // Obstacle cells that were already covered by another obstacle.
+
+        public void add(GameObjects gameObjects)
+        {
+            levels++;
+            ArrayList<Rectangle> obstacles = gameObjects.getObstacles();
+            obstacleCounts[Math.min(obstacles.size(), MAX_OBSTACLES)]++;
+            long obstacleCells = 0;
+            for (int i = 0; i < obstacles.size(); i++)
+            {
+                Rectangle obstacle = obstacles.get(i);
+                obstacleCells += (obstacle.width / GameObjects.CELL_SIZE) * (obstacle.height / GameObjects.CELL_SIZE);
+            }
+
+            // Going through the set bits of the occupancy bitset visits exactly the covered cells.
+            long[] occupancy = gameObjects.getOccupancy();
+            int covered = 0;
+            for (int word = 0; word < occupancy.length; word++)
+            {
+                long bits = occupancy[word];
+                covered += Long.bitCount(bits);
+                while (bits != 0)
+                {
+                    cellCounts[(word << 6) + Long.numberOfTrailingZeros(bits)]++;
+                    bits &= bits - 1;
+                }
+            }
+            coveredCounts[covered]++;
+            overlapCells += Math.max(0, obstacleCells - covered);
+            goalRows[gameObjects.getGoal().y / GameObjects.CELL_SIZE]++;
+        }
+
+        public void merge(Accumulator other)
+        {
+            levels += other.levels;
+            overlapCells += other.overlapCells;
+            addInto(obstacleCounts, other.obstacleCounts);
+            addInto(coveredCounts, other.coveredCounts);
+            addInto(cellCounts, other.cellCounts);
+            addInto(goalRows, other.goalRows);
+        }
+
+        private static void addInto(long[] total, long[] part)
+        {
+            for (int i = 0; i < total.length; i++)
+            {
+                total[i] += part[i];
+            }
+        }
+
+        public long getLevels()
+        {
+            return levels;
+        }
+
+        // Returns the mean, standard deviation, minimum, median, and maximum of a histogram like obstacleCounts.
+        private double[] describe(long[] histogram)
+        {
+            double sum = 0;
+            double squareSum = 0;
+            int min = -1;
+            int max = 0;
+            int median = 0;
+            long seen = 0;
+            for (int value = 0; value < histogram.length; value++)
+            {
+                long count = histogram[value];
+                if (count == 0)
+                {
+                    continue;
+                }
+                if (min < 0)
+                {
+                    min = value;
+                }
+                max = value;
+                if (seen < (levels + 1) / 2 && seen + count >= (levels + 1) / 2)
+                {
+                    median = value;
+                }
+                seen += count;
+                sum += (double)value * count;
+                squareSum += (double)value * value * count;
+            }
+            double mean = sum / levels;
+            double deviation = Math.sqrt(Math.max(0, squareSum / levels - mean * mean));
+            return new double[] {mean, deviation, Math.max(min, 0), median, max};
+        }
+
+        private double getMeanGoalRow()
+        {
+            double sum = 0;
+            for (int row = 0; row < goalRows.length; row++)
+            {
+                sum += (double)row * goalRows[row];
+            }
+            return sum / levels;
+        }
+    }
+
+    // Generates all of the levels on the given number of threads.
+    public void run(int threads) throws InterruptedException
+    {
+        // The chunk seeds are all picked here, in order, so which levels get generated doesn't depend on the threads.
+        SplittableRandom seedGenerator = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayList<ArrayList<Future<Accumulator>>> chunks = new ArrayList<ArrayList<Future<Accumulator>>>();
+        chunks.add(null); // There's no level 0.
+        for (int level = 1; level <= LEVEL_COUNT; level++)
+        {
+            ArrayList<Future<Accumulator>> levelChunks = new ArrayList<Future<Accumulator>>();
+            for (int start = 0; start < levelsPerNumber; start += CHUNK_SIZE)
+            {
+                int chunkLevel = level;
+                int chunkSize = Math.min(CHUNK_SIZE, levelsPerNumber - start);
+                long chunkSeed = seedGenerator.nextLong();
+                levelChunks.add(executor.submit(() -> generateChunk(chunkLevel, chunkSize, chunkSeed)));
+            }
+            chunks.add(levelChunks);
+        }
+        executor.shutdown();
+
+        for (int level = 1; level <= LEVEL_COUNT; level++)
+        {
+            results[level] = new Accumulator();
+            for (Future<Accumulator> chunk : chunks.get(level))
+            {
+                try
+                {
+                    results[level].merge(chunk.get());
+                }
+                catch (ExecutionException e)
+                {
+                    throw new RuntimeException("Generating levels failed.", e.getCause());
+                }
+            }
+        }
+    }
+
+    private static Accumulator generateChunk(int level, int count, long chunkSeed)
+    {
+        GameObjects gameObjects = new GameObjects(chunkSeed);
+        gameObjects.setTimed(false);
+        gameObjects.setMergingObstacles(false);
+        Accumulator accumulator = new Accumulator();
+        for (int i = 0; i < count; i++)
+        {
+            gameObjects.generateLevel(level);
+            accumulator.add(gameObjects);
+        }
+        return accumulator;
+    }
+
+    public Accumulator getResult(int level)
+    {
+        return results[level];
+    }
+
+    // Writes the four CSV files into the given folder (which is created if needed).
+    public void writeCsv(Path folder) throws IOException
+    {
+        Files.createDirectories(folder);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(folder.resolve("summary.csv"))))
+        {
+            out.println("level,levels,obstacles_mean,obstacles_sd,obstacles_min,obstacles_median,obstacles_max,"
+                + "covered_mean,covered_sd,covered_min,covered_median,covered_max,overlap_mean,goal_row_mean");
+            for (int level = 1; level <= LEVEL_COUNT; level++)
+            {
+                Accumulator result = results[level];
+                double[] obstacles = result.describe(result.obstacleCounts);
+                double[] covered = result.describe(result.coveredCounts);
+                out.println(String.format(Locale.ROOT, "%d,%d,%.4f,%.4f,%.0f,%.0f,%.0f,%.4f,%.4f,%.0f,%.0f,%.0f,%.4f,%.4f",
+                    level, result.levels, obstacles[0], obstacles[1], obstacles[2], obstacles[3], obstacles[4],
+                    covered[0], covered[1], covered[2], covered[3], covered[4],
+                    (double)result.overlapCells / result.levels, result.getMeanGoalRow()));
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(folder.resolve("distributions.csv"))))
+        {
+            out.println("level,value,obstacle_levels,covered_levels");
+            for (int level = 1; level <= LEVEL_COUNT; level++)
+            {
+                Accumulator result = results[level];
+                for (int value = 0; value <= CELL_COUNT; value++)
+                {
+                    long obstacleLevels = value <= MAX_OBSTACLES ? result.obstacleCounts[value] : 0;
+                    if (obstacleLevels != 0 || result.coveredCounts[value] != 0)
+                    {
+                        out.println(level + "," + value + "," + obstacleLevels + "," + result.coveredCounts[value]);
+                    }
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(folder.resolve("heatmap.csv"))))
+        {
+            StringBuilder header = new StringBuilder("level,row");
+            for (int column = 0; column < GameObjects.GRID_SIZE; column++)
+            {
+                header.append(",col").append(column);
+            }
+            out.println(header);
+            for (int level = 1; level <= LEVEL_COUNT; level++)
+            {
+                Accumulator result = results[level];
+                for (int row = 0; row < GameObjects.GRID_SIZE; row++)
+                {
+                    StringBuilder line = new StringBuilder().append(level).append(',').append(row);
+                    for (int column = 0; column < GameObjects.GRID_SIZE; column++)
+                    {
+                        double fraction = (double)result.cellCounts[column + GameObjects.GRID_SIZE * row] / result.levels;
+                        line.append(',').append(String.format(Locale.ROOT, "%.5f", fraction));
+                    }
+                    out.println(line);
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(folder.resolve("goals.csv"))))
+        {
+            out.println("level,row,levels,fraction");
+            for (int level = 1; level <= LEVEL_COUNT; level++)
+            {
+                Accumulator result = results[level];
+                for (int row = 0; row < GameObjects.GRID_SIZE; row++)
+                {
+                    out.println(String.format(Locale.ROOT, "%d,%d,%d,%.5f", level, row, result.goalRows[row],
+                        (double)result.goalRows[row] / result.levels));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException
+    {
+        int levelsPerNumber = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        Path folder = Paths.get(args.length > 3 ? args[3] : "analytics");
+
+        System.out.println("Generating " + levelsPerNumber + " levels for each of levels 1 to " + LEVEL_COUNT + " on " + threads
+            + " threads with seed " + seed + ".");
+        LevelAnalytics analytics = new LevelAnalytics(levelsPerNumber, seed);
+        long startTime = System.nanoTime();
+        analytics.run(threads);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        analytics.writeCsv(folder);
+        System.out.println(String.format("Generated %d levels in %.1f s (%.0f levels per second). Wrote the results to %s.",
+            (long)levelsPerNumber * LEVEL_COUNT, seconds, levelsPerNumber * LEVEL_COUNT / seconds, folder.toAbsolutePath()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LevelGenerator.java
+ * A LevelGenerator is a way of generating levels. GameObjects.generateLevel() hands the actual generating to the GameObjects object's
+ * LevelGenerator (see GameObjects.setGenerator()), which is the original density map generator (DensityMapGenerator) by default.
+ * BestOfKGenerator is the other one, which picks the most typical out of several density map levels.
+*/
+
+public interface LevelGenerator
+{
+    // Makes gameObjects into a level with the given level number. The same level number and level seed have to always give the same level.
+    // Afterwards, gameObjects.getLevelSeed() has to be a seed that DensityMapGenerator turns into the exact same level
+    // (so that replays, which only record level seeds, still work no matter which generator made the levels).
+    void generate(GameObjects gameObjects, int level, long levelSeed);
+}
\ No newline at end of file
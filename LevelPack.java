@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LevelPack.java
+ * A LevelPack is a file with many levels in it (e.g. thousands that were checked ahead of time to be beatable), which the game can play
+ * instead of generating levels ("java Main --pack packs/levels.pwpl"). Each level is stored in GameObjects.ENCODED_SIZE (34) bytes,
+ * see GameObjects.encode().
+ * The file is memory-mapped, so opening even a huge pack doesn't read it, and loading a level is just finding where it is
+ * (all levels are the same size) and copying its 34 bytes into a GameObjects object. Nothing gets parsed or allocated per level.
+ *
+ * Packs are made from the command line:
+ *     java LevelPack create <file> [levels per level number] [threads] [seed] [verify states] [upgrades, e.g. 4,2,2,2,1,3,2,1,2]
+ *     java LevelPack info <file>
+ * With a number of verify states, every level is checked by LevelVerifier with the given upgrades (none by default), and only levels
+ * that were shown to be beatable are put in the pack (up to MAX_ATTEMPTS tries per level). The route search may expand that many
+ * states per level (see LevelVerifier.setExpansionBudget()) and has no time limit, so the same seed and arguments always make
+ * the same pack, no matter how fast or busy the computer is.
+ *
+ * File format (all numbers big-endian):
+ * Header: the int MAGIC, the int VERSION, the int number of levels, and then the index: FINAL_LEVEL + 1 ints where int i
+ * is the number of the first level with level number i. The levels are sorted by level number, so the levels with level number i
+ * are the ones from index entry i up to (not including) index entry i + 1.
+ * Then the levels, one after another.
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class LevelPack
+{
+    public static final int MAGIC = 0x5057504C; // "PWPL" (Platformer Without Platforms Level pack).
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 12 + 4 * (GameObjects.FINAL_LEVEL + 1);
+    private static final int MAX_ATTEMPTS = 100; // How many levels are generated at most for each level that goes into a verified pack.
+
+    private MappedByteBuffer data;
+    private int levelCount;
+    private int[] firstLevels = new int[GameObjects.FINAL_LEVEL + 1]; // The index from the header.
+
+    public LevelPack(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            // The mapping stays valid after the channel is closed.
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC)
+        {
+            throw new IOException(path + " isn't a level pack.");
+        }
+        if (data.getInt(4) != VERSION)
+        {
+            throw new IOException(path + " is a version " + data.getInt(4) + " level pack, but only version " + VERSION + " can be read.");
+        }
+        levelCount = data.getInt(8);
+        if (levelCount < 0 || (long)levelCount * GameObjects.ENCODED_SIZE > data.capacity() - HEADER_SIZE)
+        {
+            throw new IOException(path + " is cut off.");
+        }
+        // The index can only go up from one level number to the next and has to stay within the pack. Otherwise load() would read
+        // past the end of the file (or the wrong levels) in the middle of the game.
+        for (int i = 0; i <= GameObjects.FINAL_LEVEL; i++)
+        {
+            firstLevels[i] = data.getInt(12 + 4 * i);
+            if (firstLevels[i] < (i > 0 ? firstLevels[i - 1] : 0) || firstLevels[i] > levelCount)
+            {
+                throw new IOException(path + " has a broken index.");
+            }
+        }
+    }
+
+    public int getLevelCount()
+    {
+        return levelCount;
+    }
+
+    // How many levels in the pack have the given level number.
+    public int getLevelCount(int level)
+    {
+        if (level < 0 || level >= GameObjects.FINAL_LEVEL)
+        {
+            return 0;
+        }
+        return firstLevels[level + 1] - firstLevels[level];
+    }
+
+    // Loads the level with the given number in the pack into gameObjects and returns its level number.
+    public int load(int index, GameObjects gameObjects)
+    {
+        return gameObjects.decode(data, HEADER_SIZE + index * GameObjects.ENCODED_SIZE);
+    }
+
+    // Loads the index-th level with the given level number into gameObjects.
+    public void load(int level, int index, GameObjects gameObjects)
+    {
+        load(firstLevels[level] + index, gameObjects);
+    }
+
+    // Generates a new pack with levelsPerNumber levels for every level number from 1 to FINAL_LEVEL - 1, spread over the given threads.
+    // If verifyStates is more than 0, only levels that LevelVerifier shows to be beatable with the given upgrades
+    // (expanding at most verifyStates states) are kept.
+    // Returns how many levels couldn't be verified in MAX_ATTEMPTS tries (those are in the pack anyway, so every level number is full).
+    public static int create(Path path, int levelsPerNumber, int threads, long seed, long verifyStates, int[] upgrades)
+        throws IOException, InterruptedException
+    {
+        int levelNumbers = GameObjects.FINAL_LEVEL - 1;
+        int total = levelsPerNumber * levelNumbers;
+        if (path.getParent() != null)
+        {
+            Files.createDirectories(path.getParent());
+        }
+        Files.deleteIfExists(path); // Mapping can't make a file smaller, so the old one is deleted first.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)total * GameObjects.ENCODED_SIZE);
+            out.putInt(0, MAGIC);
+            out.putInt(4, VERSION);
+            out.putInt(8, total);
+            out.putInt(12, 0); // There's no level 0.
+            for (int level = 1; level <= GameObjects.FINAL_LEVEL; level++)
+            {
+                out.putInt(12 + 4 * level, (level - 1) * levelsPerNumber);
+            }
+
+            // Every level number is its own task that writes only its own part of the file (with absolute puts, so the buffer can be shared).
+            // Each task gets its own seed, picked here in order, so the pack doesn't depend on the number of threads.
+            AtomicInteger unverified = new AtomicInteger();
+            SplittableRandom seedGenerator = new SplittableRandom(seed);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+            for (int level = 1; level <= levelNumbers; level++)
+            {
+                int taskLevel = level;
+                long taskSeed = seedGenerator.nextLong();
+                results.add(executor.submit(() -> {
+                    GameObjects gameObjects = new GameObjects(taskSeed, false); // Every level comes from generateLevel() below.
+                    LevelVerifier verifier = null;
+                    if (verifyStates > 0)
+                    {
+                        verifier = new LevelVerifier(null, 0); // No time limit, only the expansion budget.
+                        verifier.setExpansionBudget(verifyStates);
+                    }
+                    for (int i = 0; i < levelsPerNumber; i++)
+                    {
+                        gameObjects.generateLevel(taskLevel);
+                        for (int attempt = 1; verifier != null; attempt++)
+                        {
+                            if (verifier.verify(gameObjects, upgrades.clone()) == LevelVerifier.SOLVABLE)
+                            {
+                                break;
+                            }
+                            if (attempt == MAX_ATTEMPTS)
+                            {
+                                unverified.getAndIncrement();
+                                break;
+                            }
+                            gameObjects.generateLevel(taskLevel);
+                        }
+                        gameObjects.encode(out, HEADER_SIZE + ((taskLevel - 1) * levelsPerNumber + i) * GameObjects.ENCODED_SIZE, taskLevel);
+                    }
+                }));
+            }
+            executor.shutdown();
+            for (Future<?> result : results)
+            {
+                try
+                {
+                    result.get();
+                }
+                catch (ExecutionException e)
+                {
+                    throw new IOException("Generating the level pack failed.", e.getCause());
+                }
+            }
+            out.force();
+            return unverified.get();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length >= 2 && args[0].equals("create"))
+        {
+            Path path = Paths.get(args[1]);
+            int levelsPerNumber = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+            long verifyStates = args.length > 5 ? Long.parseLong(args[5]) : 0;
+            int[] upgrades = new int[9];
+            if (args.length > 6)
+            {
+                String[] parts = args[6].split(",");
+                for (int i = 0; i < parts.length && i < upgrades.length; i++)
+                {
+                    upgrades[i] = Integer.parseInt(parts[i].trim());
+                }
+            }
+            long startTime = System.nanoTime();
+            int unverified = create(path, levelsPerNumber, threads, seed, verifyStates, upgrades);
+            System.out.println(String.format("Wrote %d levels to %s in %.1f s.", levelsPerNumber * (GameObjects.FINAL_LEVEL - 1), path,
+                (System.nanoTime() - startTime) / 1e9));
+            if (verifyStates > 0)
+            {
+                System.out.println(unverified + " levels couldn't be shown to be beatable in " + MAX_ATTEMPTS + " tries.");
+            }
+        }
+        else if (args.length >= 2 && args[0].equals("info"))
+        {
+            LevelPack pack = new LevelPack(Paths.get(args[1]));
+            System.out.println(pack.getLevelCount() + " levels.");
+            for (int level = 1; level < GameObjects.FINAL_LEVEL; level++)
+            {
+                if (pack.getLevelCount(level) > 0)
+                {
+                    System.out.println("Level " + level + ": " + pack.getLevelCount(level));
+                }
+            }
+            // Loading every level once shows how fast loading is.
+            GameObjects gameObjects = new GameObjects(0, false); // The levels are loaded into it.
+            long startTime = System.nanoTime();
+            long obstacles = 0;
+            for (int i = 0; i < pack.getLevelCount(); i++)
+            {
+                pack.load(i, gameObjects);
+                obstacles += gameObjects.getObstacles().size();
+            }
+            long elapsed = System.nanoTime() - startTime;
+            System.out.println(String.format("Loaded every level in %.1f ms (%.0f ns per level, %d obstacles in total).", elapsed / 1e6,
+                (double)elapsed / Math.max(1, pack.getLevelCount()), obstacles));
+        }
+        else
+        {
+            System.out.println("Usage: java LevelPack create <file> [levels per level number] [threads] [seed] [verify states] [upgrades]");
+            System.out.println("       java LevelPack info <file>");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LevelPregenerator.java
+ * The LevelPregenerator generates levels ahead of time on a background thread so that GameSimulation doesn't have to generate them
+ * on the Event Dispatch Thread when a level is beaten or when r is pressed (generateLevel() can take a while on later levels since it
+ * retries whenever it hits a custom region).
+ * It keeps a few levels ready for the current level number (for pressing r, possibly many times in a row) and for the next level number.
+ * Each ready level is a whole GameObjects object in its own slot. The slots are an AtomicReferenceArray, so handing a level over
+ * is just one atomic swap and neither thread ever waits on a lock. When there's nothing to do, the background thread sleeps (parks)
+ * until a level is taken or the current level number changes.
+ * GameSimulation gives back the levels it's done with (recycle()), and new levels are generated into those objects,
+ * so playing doesn't keep allocating new GameObjects objects.
+ * If a LevelVerifier is set, each level is checked with the player's upgrades before it's made ready, and levels that can't be
+ * beaten are thrown away and generated again (up to MAX_ATTEMPTS times). The upgrades are a copy made in setCurrentLevel(),
+ * and ready levels that were checked with other upgrades are never handed out.
+ * If a LevelGenerator is set (e.g. a BestOfKGenerator), the levels are made with it instead of the default one.
+ *
+ * The same seed always gives the same levels, no matter how far ahead the background thread got. Every level has a fixed place:
+ * it's the index-th level with its level number (counting how many were taken before it), and that place decides its seeds (see
+ * getLevelSeed()). If that level isn't ready when it's taken, take() makes it right away on the caller's thread in exactly
+ * the same way, instead of generating some other level.
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+public class LevelPregenerator implements Runnable
+{
+    private static final int LEVELS_READY = 3; // How many levels are kept ready for each of the current and next level numbers.
+    private static final int MAX_ATTEMPTS = 5; // How many times a level that can't be beaten is generated again before giving up.
+    private static final int SPARE_LEVELS = 2 * LEVELS_READY; // How many old GameObjects objects are kept to generate new levels into.
+    
+    // A ready level, which level of its level number it is (see take()), and the upgrades it was checked with.
+    private static class ReadyLevel
+    {
+        private final GameObjects level;
+        private final int index;
+        private final int[] upgrades;
+
+        private ReadyLevel(GameObjects theLevel, int theIndex, int[] theUpgrades)
+        {
+            level = theLevel;
+            index = theIndex;
+            upgrades = theUpgrades;
+        }
+    }
+
+    // Slot (level - 1) * LEVELS_READY + index % LEVELS_READY holds the index-th level with that level number once it's ready, or null.
+    // The last level doesn't have any obstacles, so it's quick to generate and never gets slots.
+    private AtomicReferenceArray<ReadyLevel> readyLevels = new AtomicReferenceArray<ReadyLevel>((GameObjects.FINAL_LEVEL - 1) * LEVELS_READY);
+    // How many levels of each level number have been taken so far, which is also the index of the next one. Only take() changes these.
+    private AtomicIntegerArray takenCounts = new AtomicIntegerArray(GameObjects.FINAL_LEVEL);
+    // GameObjects objects that GameSimulation is done with (see recycle()), so that new levels don't need new objects.
+    private AtomicReferenceArray<GameObjects> spareLevels = new AtomicReferenceArray<GameObjects>(SPARE_LEVELS);
+    private volatile int currentLevel = 1;
+    private volatile boolean running = false;
+    private Thread thread;
+    private long seedBase;
+    private LevelVerifier verifier; // Only used by the background thread. Null if levels aren't checked.
+    // A copy of the player's upgrades from setCurrentLevel(). It's replaced with a new copy when they change and never changed itself,
+    // so comparing it with == is enough to tell whether a ready level was checked with the current upgrades.
+    private volatile int[] upgrades;
+    private LevelGenerator generator; // Null for the default generator.
+
+    public LevelPregenerator(long seed)
+    {
+        // Split off a separate stream so that these levels don't repeat the ones generated from the same seed elsewhere.
+        seedBase = new SplittableRandom(seed).split().nextLong();
+    }
+    
+    // Levels will be checked with the upgrades given to setCurrentLevel(). This has to be called before start().
+    public void setVerifier(LevelVerifier theVerifier)
+    {
+        verifier = theVerifier;
+    }
+    
+    // This has to be called before start() too. The generator is used by both the background thread and the threads that call take(),
+    // so it has to be thread-safe.
+    public void setGenerator(LevelGenerator theGenerator)
+    {
+        generator = theGenerator;
+    }
+    
+    public void start()
+    {
+        running = true;
+        thread = new Thread(this, "Level pre-generation");
+        thread.setDaemon(true); // Don't keep the game running after the window is closed.
+        thread.start();
+    }
+    
+    public void stop()
+    {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+    
+    // Lets the background thread know which level number the player is on and which upgrades they have, so that it prepares
+    // the right levels. The upgrades are copied, since the caller keeps changing its own array as upgrades are picked.
+    // If they're different from last time, the ready levels are made again: upgrades don't only go up (e.g. teleporting replaces
+    // dashing in every direction), so a level that could be beaten with the old ones might not be beatable with the new ones.
+    public void setCurrentLevel(int level, int[] theUpgrades)
+    {
+        boolean changed = false;
+        if (upgrades == null || !Arrays.equals(upgrades, theUpgrades))
+        {
+            upgrades = theUpgrades.clone();
+            changed = true;
+        }
+        if (currentLevel != level)
+        {
+            currentLevel = level;
+            changed = true;
+            if (verifier != null && level % 2 == 0)
+            {
+                prepareUpgradeChoices(upgrades);
+            }
+        }
+        if (changed)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+    
+    // The upgrade screen comes after every even level (see Main.nextLevel()), so while the player is on one, LevelVerifier's height bound
+    // is worked out in the background for every upgrade they could pick there. Otherwise the level right after picking one would wait
+    // for it in take(), since the ready levels were checked with the old upgrades.
+    private void prepareUpgradeChoices(int[] theUpgrades)
+    {
+        for (int i = 0; i < theUpgrades.length; i++)
+        {
+            if (UpgradePanel.canUpgrade(theUpgrades, i))
+            {
+                int[] choice = theUpgrades.clone();
+                choice[i]++;
+                LevelVerifier.prepareHighestReachableY(choice, ForkJoinPool.commonPool());
+            }
+        }
+    }
+    
+    // Returns the next level with the given level number (the index-th one, where index is how many were taken before).
+    // That's the ready one if it's there and was checked with the upgrades from the last setCurrentLevel(), and otherwise it's made
+    // right here, the same way the background thread would have made it.
+    // Returns null for the final level, which doesn't have any obstacles and doesn't need any of this.
+    public GameObjects take(int level)
+    {
+        if (level < 1 || level >= GameObjects.FINAL_LEVEL)
+        {
+            return null;
+        }
+        int index = takenCounts.get(level);
+        ReadyLevel ready = readyLevels.getAndSet(getSlot(level, index), null);
+        // This is only counted once the slot is empty, so the background thread can't put a later level into it in between.
+        takenCounts.set(level, index + 1);
+        LockSupport.unpark(thread); // A slot is free now, so there's something to generate.
+        int[] theUpgrades = upgrades;
+        if (ready != null && ready.index == index && ready.upgrades == theUpgrades)
+        {
+            return ready.level;
+        }
+        if (ready != null)
+        {
+            recycle(ready.level); // It was made for a level that was already taken, or with other upgrades.
+        }
+        GameObjects tempLevel = getSpareLevel();
+        makeLevel(tempLevel, level, index, theUpgrades, null);
+        return tempLevel;
+    }
+    
+    // Gives back a level that was taken and isn't used anymore, so that a later level can be generated into the same object.
+    // If there are enough spares already, it's just left to the garbage collector.
+    public void recycle(GameObjects oldLevel)
+    {
+        for (int i = 0; i < SPARE_LEVELS; i++)
+        {
+            if (spareLevels.compareAndSet(i, null, oldLevel))
+            {
+                return;
+            }
+        }
+    }
+    
+    // A spare GameObjects object, or a new one if there isn't any. The new ones don't generate a level of their own.
+    private GameObjects getSpareLevel()
+    {
+        for (int i = 0; i < SPARE_LEVELS; i++)
+        {
+            GameObjects spare = spareLevels.getAndSet(i, null);
+            if (spare != null)
+            {
+                return spare;
+            }
+        }
+        return new GameObjects(0, false);
+    }
+    
+    public void run()
+    {
+        while (running)
+        {
+            int level = currentLevel;
+            int[] theUpgrades = upgrades;
+            if (verifier != null && theUpgrades == null)
+            {
+                LockSupport.park(this); // The levels can't be checked until setCurrentLevel() gives the upgrades.
+                continue;
+            }
+            
+            // Levels for level numbers the player has already left won't be needed anymore.
+            for (int tempLevel = 1; tempLevel < GameObjects.FINAL_LEVEL; tempLevel++)
+            {
+                if (tempLevel != level && tempLevel != level + 1)
+                {
+                    for (int i = 0; i < LEVELS_READY; i++)
+                    {
+                        ReadyLevel oldLevel = readyLevels.getAndSet(getSlot(tempLevel, i), null);
+                        if (oldLevel != null)
+                        {
+                            recycle(oldLevel.level);
+                        }
+                    }
+                }
+            }
+            
+            // Fill one empty slot at a time, then start over in case the level number changed in the meantime.
+            // The current level number goes first since pressing r is what's likely to come next.
+            if (!fillEmptySlot(level, theUpgrades) && !fillEmptySlot(level + 1, theUpgrades))
+            {
+                LockSupport.park(this);
+            }
+        }
+    }
+    
+    // Makes one of the next LEVELS_READY levels with the given level number that isn't ready yet (or was checked with other upgrades).
+    // Returns false if there was nothing to do.
+    private boolean fillEmptySlot(int level, int[] theUpgrades)
+    {
+        if (level < 1 || level >= GameObjects.FINAL_LEVEL)
+        {
+            return false;
+        }
+        int firstIndex = takenCounts.get(level);
+        for (int index = firstIndex; index < firstIndex + LEVELS_READY; index++)
+        {
+            int slot = getSlot(level, index);
+            ReadyLevel oldLevel = readyLevels.get(slot);
+            // Empty, holding a level that was already taken, or holding one that was checked with upgrades the player doesn't have anymore.
+            if (oldLevel == null || oldLevel.index < firstIndex || oldLevel.upgrades != theUpgrades)
+            {
+                GameObjects tempLevel = getSpareLevel();
+                makeLevel(tempLevel, level, index, theUpgrades, verifier);
+                if (!readyLevels.compareAndSet(slot, oldLevel, new ReadyLevel(tempLevel, index, theUpgrades)))
+                {
+                    recycle(tempLevel); // It was taken (and made by take() itself) in the meantime.
+                }
+                else if (oldLevel != null)
+                {
+                    recycle(oldLevel.level);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Makes the index-th level with the given level number in target. If levels are checked and it can't be beaten with theUpgrades,
+    // it's made again with the next attempt's seed. Only the flood fill and the height check (LevelVerifier.isRuledOut()) can show
+    // that a level can't be beaten, and they don't depend on time, so this makes the same level whether or not theVerifier
+    // (the background thread's, which also runs the route search) is given.
+    private void makeLevel(GameObjects target, int level, int index, int[] theUpgrades, LevelVerifier theVerifier)
+    {
+        target.setGenerator(generator != null ? generator : DensityMapGenerator.INSTANCE);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+        {
+            target.generateLevel(level, getLevelSeed(level, index, attempt));
+            if (verifier == null || attempt == MAX_ATTEMPTS - 1)
+            {
+                break;
+            }
+            boolean ruledOut;
+            if (theVerifier != null)
+            {
+                ruledOut = theVerifier.verify(target, theUpgrades.clone()) == LevelVerifier.UNSOLVABLE;
+            }
+            else
+            {
+                ruledOut = LevelVerifier.isRuledOut(target, theUpgrades.clone());
+            }
+            if (!ruledOut)
+            {
+                break;
+            }
+        }
+        // The levels are only generated here, so they go back to the default generator before they're handed over.
+        target.setGenerator(DensityMapGenerator.INSTANCE);
+    }
+    
+    // The seed of the given attempt at the index-th level with the given level number. All of the seeds are values of the one sequence
+    // that new SplittableRandom(seedBase) would give, and every (level number, index, attempt) has its own place in that sequence,
+    // so a level's seed doesn't depend on which levels were made before it, on which thread, or when.
+    private long getLevelSeed(int level, int index, int attempt)
+    {
+        long place = ((long)index * MAX_ATTEMPTS + attempt) * GameObjects.FINAL_LEVEL + level;
+        return new SplittableRandom(seedBase + 0x9E3779B97F4A7C15L * place).nextLong();
+    }
+    
+    private int getSlot(int level, int index)
+    {
+        return (level - 1) * LEVELS_READY + index % LEVELS_READY;
+    }
+}
\ No newline at end of file
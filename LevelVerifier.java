@@ -0,0 +1,601 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LevelVerifier.java
+ * The LevelVerifier checks whether a generated level can actually be beaten with a given set of upgrades.
+ * GameObjects sometimes makes levels that can't be, like a goal that's walled off, or a goal high up on level 20+ without any midair jumps.
+ * There are three checks, from cheapest to most expensive:
+ * 1. A flood fill over the 25x25 grid cells to see if the goal is connected to the start at all (skipped with teleport and
+ *    invincible dashes, since those can go through obstacles).
+ * 2. How high the player can possibly get with their upgrades (skipped with pogo jumps, since obstacles can then be climbed).
+ *    Only the floor can be stood on, so this is found once per set of upgrades by searching every way of going straight up with the
+ *    real GameSimulation on an empty level.
+ * 3. A search for an actual way to the goal using the real GameSimulation.tick(). Searching every state the player could be in takes
+ *    far too long, so this is a beam search: every tick, each kept state tries a set of inputs, and only the beamWidth states closest to
+ *    the goal (going around obstacles) are kept for the next tick. The inputs for a tick are tried in parallel on a ForkJoinPool, and states
+ *    that are the same (see GameSimulation.getSearchKey()) are only kept once, using a lock-free hash set.
+ *    If the beam runs out of states or ticks, the search starts over with a wider beam, until the time budget runs out.
+ *    There can also be a budget of how many states may be expanded (see setExpansionBudget()). Unlike the time budget, that one
+ *    doesn't depend on how fast or busy the computer is, so a search without a ForkJoinPool gives the same answer every time.
+ * Checks 1 and 2 can only prove that a level can't be beaten, and check 3 can only prove that it can, so a level that is UNKNOWN
+ * (the time ran out) should be treated as beatable.
+ * RouteSolver also uses the route search on its own, one beam width at a time, to find shorter and shorter routes.
+ * Note that a LevelVerifier should only check one level at a time, though the search itself runs on many threads.
+ * Without a ForkJoinPool (null), the search runs on the calling thread only. That's for when there are already many searches running
+ * on their own threads, like in BotRunner.
+*/
+
+import java.awt.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class LevelVerifier
+{
+    public static final int SOLVABLE = 0;
+    public static final int UNSOLVABLE = 1;
+    public static final int UNKNOWN = 2; // Ran out of time (or expansions) before finding out.
+
+    private static final int FIELD_SIZE = GameObjects.CELL_SIZE * GameObjects.GRID_SIZE;
+    private static final int FIRST_BEAM_WIDTH = 16;
+    private static final int MAX_BEAM_WIDTH = 4096;
+    private static final int MAX_SEARCH_TICKS = 60 * 20; // 20 seconds of game time.
+    private static final int SPLIT_THRESHOLD = 16; // Kept states per fork/join task before it's split in two.
+    // Each entry in a layer is a saved GameSimulation state plus a link to the state it came from (parent index << 8 | action index).
+    private static final int ENTRY_SIZE = GameSimulation.STATE_SIZE + 1;
+    private static final int MAX_REACH_STATES = 1 << 18; // Most states getHighestReachableY() will look at.
+    private static final int UNREACHABLE = 1000; // Distance (in cells) for cells that can't be walked to from the goal.
+
+    // The visited set is an open addressing hash table. Each slot is (stamp << 48 | 48-bit hash of a search key).
+    // Slots with an old stamp count as empty, so starting a new search just means using a new stamp instead of clearing the table.
+    private static final int VISITED_BITS = 20;
+    private AtomicLongArray visited = new AtomicLongArray(1 << VISITED_BITS);
+    private long visitedStamp = 0;
+    private AtomicInteger visitedCount = new AtomicInteger();
+
+    private ForkJoinPool pool;
+    private long timeBudgetNanos;
+    private long expansionBudget = 0; // Most states a search may expand (each one tries every action), or 0 for no limit.
+    // See getHighestReachableY(). This can take a second for some upgrades, so the results are shared by every LevelVerifier.
+    // Each one is a task that whoever needs it first runs (see prepareHighestReachableY()), and anyone else just waits for.
+    private static ConcurrentHashMap<String, FutureTask<Integer>> highestYCache = new ConcurrentHashMap<String, FutureTask<Integer>>();
+
+    // The search that is currently running.
+    private GameObjects level;
+    private int[] upgrades;
+    private int[] actions;
+    private long deadline;
+    private int[] distanceField = new int[GameObjects.GRID_SIZE * GameObjects.GRID_SIZE]; // Cells to walk from each cell to the goal.
+    // The level (and its version) that distanceField is for, so that searching the same level again doesn't compute it again.
+    private GameObjects distanceFieldLevel;
+    private int distanceFieldVersion;
+    private boolean distanceFieldConnected;
+    private ArrayList<long[]> layers = new ArrayList<long[]>();
+    private long[] currentLayer;
+    private long[] candidates;
+    private long[] candidateOrder; // (distance << 32 | cell << 24 | candidate index), sorted to find the best candidates.
+    private int[] cellCounts = new int[GameObjects.GRID_SIZE * GameObjects.GRID_SIZE];
+    private AtomicInteger candidateCount = new AtomicInteger();
+    private volatile boolean outOfTime; // Out of time, out of expansions, or cancelled.
+    private AtomicLong expansions = new AtomicLong(); // States expanded so far by the search that is currently running.
+    private AtomicInteger generation = new AtomicInteger(); // Goes up by one with every cancel().
+    private int searchGeneration; // The generation of the search that is currently running. It gives up once generation is different.
+    private AtomicLong goalLink = new AtomicLong(-1); // Same format as the links in the layers.
+    private int[] solution;
+
+    // The time budget is for verify(). 0 means no time limit.
+    public LevelVerifier(ForkJoinPool thePool, long timeBudgetMillis)
+    {
+        pool = thePool;
+        timeBudgetNanos = timeBudgetMillis * 1000000L;
+    }
+
+    // Sets how many states each search may expand from now on (0 for no limit). A verify() or findRoute() shares it between all of its
+    // beam widths. Searches stop at whichever budget runs out first. A time budget of 0 means no time limit, so that only this one counts.
+    public void setExpansionBudget(long maxExpansions)
+    {
+        expansionBudget = maxExpansions;
+    }
+
+    // Returns SOLVABLE, UNSOLVABLE, or UNKNOWN for the current level of theLevel with theUpgrades (same indices as Main.getUpgrades()).
+    public int verify(GameObjects theLevel, int[] theUpgrades)
+    {
+        solution = null;
+        if (isRuledOut(theLevel, theUpgrades))
+        {
+            return UNSOLVABLE;
+        }
+        if (isGoalOffScreen(theLevel))
+        {
+            return UNKNOWN;
+        }
+        return findRoute(theLevel, theUpgrades, null, timeBudgetNanos);
+    }
+
+    // Only checks 1 and 2, which is exactly when verify() returns UNSOLVABLE. Unlike the route search, these don't depend on how much
+    // time there is, so the same level and upgrades always give the same answer. Any thread can call this (it has its own scratch space).
+    public static boolean isRuledOut(GameObjects theLevel, int[] theUpgrades)
+    {
+        if (isGoalOffScreen(theLevel))
+        {
+            return false;
+        }
+        if (theUpgrades[5] < 2 && !fillDistanceField(theLevel, new int[GameObjects.GRID_SIZE * GameObjects.GRID_SIZE]))
+        {
+            return true;
+        }
+        Rectangle goal = theLevel.getGoal();
+        return theUpgrades[6] == 0 && getHighestReachableY(theUpgrades) >= goal.y + goal.height;
+    }
+
+    // The final level's goal is off screen on purpose.
+    private static boolean isGoalOffScreen(GameObjects theLevel)
+    {
+        Rectangle goal = theLevel.getGoal();
+        return goal.x < 0 || goal.y < 0 || goal.x >= FIELD_SIZE || goal.y >= FIELD_SIZE;
+    }
+
+    // Runs only the route search (check 3), starting from the given saved state (or from the start of the level if it's null).
+    // Returns SOLVABLE if a route was found (see getSolution()) or UNKNOWN otherwise.
+    public int findRoute(GameObjects theLevel, int[] theUpgrades, long[] startState, long budgetNanos)
+    {
+        startSearch(theLevel, theUpgrades, budgetNanos, generation.get());
+        for (int beamWidth = FIRST_BEAM_WIDTH; beamWidth <= MAX_BEAM_WIDTH && !outOfTime; beamWidth *= 4)
+        {
+            if (beamSearch(startState, beamWidth, MAX_SEARCH_TICKS))
+            {
+                solution = buildSolution();
+                return SOLVABLE;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // Same, but with only one beam search with the given beam width, which gives up on routes longer than maxTicks.
+    // Since the beam search goes one tick at a time, the route it finds is the shortest one the beam can find.
+    // It belongs to theGeneration (from cancel()), so it gives up right away if there was another cancel() since then.
+    public int findRoute(GameObjects theLevel, int[] theUpgrades, long[] startState, int beamWidth, int maxTicks, long budgetNanos,
+        int theGeneration)
+    {
+        startSearch(theLevel, theUpgrades, budgetNanos, theGeneration);
+        if (beamSearch(startState, beamWidth, Math.min(maxTicks, MAX_SEARCH_TICKS)))
+        {
+            solution = buildSolution();
+            return SOLVABLE;
+        }
+        return UNKNOWN;
+    }
+
+    // Makes the search that's running right now (on another thread) give up as if it ran out of time, and returns the new generation.
+    // A search given that generation only gives up at the next cancel(), so a cancel() can't get lost if it comes just before
+    // the search it was meant for starts. Searches without a generation belong to the one they start in.
+    public int cancel()
+    {
+        return generation.incrementAndGet();
+    }
+
+    private void startSearch(GameObjects theLevel, int[] theUpgrades, long budgetNanos, int theGeneration)
+    {
+        level = theLevel;
+        upgrades = theUpgrades;
+        actions = createActions(upgrades);
+        deadline = budgetNanos > 0 ? System.nanoTime() + budgetNanos : Long.MAX_VALUE;
+        expansions.set(0);
+        solution = null;
+        outOfTime = false;
+        searchGeneration = theGeneration;
+        computeDistanceField(level);
+    }
+
+    // The inputs (GameSimulation input bits), one per tick, of the way to the goal found by the last verify() or findRoute().
+    // Null if the goal wasn't reached.
+    public int[] getSolution()
+    {
+        return solution;
+    }
+
+    private boolean beamSearch(long[] startState, int beamWidth, int maxTicks)
+    {
+        layers.clear();
+        goalLink.set(-1);
+        visitedStamp = (visitedStamp + 1) & 0xFFFF;
+        if (visitedStamp == 0) // The stamps wrapped around, so old slots could look new. Clearing the table fixes that.
+        {
+            for (int i = 0; i < visited.length(); i++)
+            {
+                visited.set(i, 0);
+            }
+            visitedStamp = 1;
+        }
+        visitedCount.set(0);
+
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, upgrades, level);
+        if (startState != null)
+        {
+            simulation.loadState(startState, 0);
+        }
+        else
+        {
+            simulation.resetPlayer();
+        }
+        currentLayer = new long[ENTRY_SIZE];
+        simulation.saveState(currentLayer, 0);
+        addVisited(simulation.getSearchKey());
+        int currentLayerSize = 1;
+        candidates = new long[ENTRY_SIZE * beamWidth * actions.length];
+        candidateOrder = new long[beamWidth * actions.length];
+
+        for (int tick = 0; tick < maxTicks; tick++)
+        {
+            layers.add(currentLayer);
+            candidateCount.set(0);
+            if (pool != null)
+            {
+                pool.invoke(new ExpandTask(0, currentLayerSize));
+            }
+            else
+            {
+                expand(0, currentLayerSize);
+            }
+            if (goalLink.get() >= 0)
+            {
+                return true;
+            }
+            int count = candidateCount.get();
+            if (outOfTime || count == 0)
+            {
+                return false;
+            }
+
+            // Keep the best candidates, but only a few per cell. Otherwise the whole beam ends up in the same spot under a ledge.
+            Arrays.sort(candidateOrder, 0, count);
+            Arrays.fill(cellCounts, 0);
+            int maxPerCell = Math.max(2, beamWidth / 8);
+            long[] nextLayer = new long[ENTRY_SIZE * Math.min(count, beamWidth)];
+            currentLayerSize = 0;
+            for (int i = 0; i < count && currentLayerSize < beamWidth; i++)
+            {
+                int cell = (int)(candidateOrder[i] >>> 24) & 0xFF;
+                if (cellCounts[cell]++ >= maxPerCell)
+                {
+                    continue;
+                }
+                int index = (int)candidateOrder[i] & 0xFFFFFF;
+                System.arraycopy(candidates, index * ENTRY_SIZE, nextLayer, currentLayerSize * ENTRY_SIZE, ENTRY_SIZE);
+                currentLayerSize++;
+            }
+            currentLayer = nextLayer;
+        }
+        return false;
+    }
+
+    // Fills in distanceField for the given level, unless it's already for that level.
+    private boolean computeDistanceField(GameObjects theLevel)
+    {
+        if (theLevel == distanceFieldLevel && theLevel.getVersion() == distanceFieldVersion)
+        {
+            return distanceFieldConnected;
+        }
+        distanceFieldConnected = fillDistanceField(theLevel, distanceField);
+        distanceFieldLevel = theLevel;
+        distanceFieldVersion = theLevel.getVersion();
+        return distanceFieldConnected;
+    }
+
+    // Fills in distanceField with how many cells away from the goal each cell is (without going through obstacles).
+    // Returns whether the start is connected to the goal.
+    // The player is smaller than a cell, so it can get through any gap that is one cell wide (but not through a diagonal gap).
+    private static boolean fillDistanceField(GameObjects theLevel, int[] distanceField)
+    {
+        int size = GameObjects.GRID_SIZE;
+        Arrays.fill(distanceField, UNREACHABLE);
+        int[] queue = new int[size * size];
+        int queueStart = 0;
+        int queueEnd = 0;
+        int goal = theLevel.getGoal().x / GameObjects.CELL_SIZE + size * (theLevel.getGoal().y / GameObjects.CELL_SIZE);
+        distanceField[goal] = 0;
+        queue[queueEnd++] = goal;
+        while (queueStart < queueEnd)
+        {
+            int cell = queue[queueStart++];
+            int cellX = cell % size;
+            int cellY = cell / size;
+            for (int direction = 0; direction < 4; direction++)
+            {
+                int nextX = cellX + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+                int nextY = cellY + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+                if (nextX < 0 || nextY < 0 || nextX >= size || nextY >= size)
+                {
+                    continue;
+                }
+                int next = nextX + size * nextY;
+                if (distanceField[next] == UNREACHABLE && !theLevel.isCellOccupied(nextX, nextY))
+                {
+                    distanceField[next] = distanceField[cell] + 1;
+                    queue[queueEnd++] = next;
+                }
+            }
+        }
+        return distanceField[1 + size * (size - 1)] != UNREACHABLE; // The player starts at (25, 384).
+    }
+
+    // How close to the goal a state is. Lower is better.
+    // It's mostly the number of cells to walk around obstacles to get to the goal, with the exact distance to break ties.
+    private int getDistance(GameSimulation simulation)
+    {
+        int centerX = simulation.getPlayerX() + simulation.getPlayerSize() / 2;
+        int centerY = simulation.getPlayerY() + simulation.getPlayerSize() / 2;
+        Rectangle goal = level.getGoal();
+        int distanceX = centerX - (goal.x + goal.width / 2);
+        int distanceY = centerY - (goal.y + goal.height / 2);
+        return distanceField[getCell(simulation)] * 1000 + (int)Math.sqrt(distanceX * distanceX + distanceY * distanceY);
+    }
+
+    // The grid cell the middle of the player is in.
+    private static int getCell(GameSimulation simulation)
+    {
+        int centerX = simulation.getPlayerX() + simulation.getPlayerSize() / 2;
+        int centerY = simulation.getPlayerY() + simulation.getPlayerSize() / 2;
+        int cellX = Math.max(0, Math.min(GameObjects.GRID_SIZE - 1, centerX / GameObjects.CELL_SIZE));
+        int cellY = Math.max(0, Math.min(GameObjects.GRID_SIZE - 1, centerY / GameObjects.CELL_SIZE));
+        return cellX + GameObjects.GRID_SIZE * cellY;
+    }
+
+    // The lowest y coordinate (highest point) the player could ever get to with these upgrades, not counting pogo jumps.
+    // Going sideways doesn't help with getting higher, so this searches the states reachable with only the inputs that can go up
+    // (and horizontal dashes, which can hover), on an empty level. The result is cached since upgrades only change every 2 levels.
+    // If another thread is already searching for the same upgrades, this waits for its result instead of searching again.
+    private static int getHighestReachableY(int[] theUpgrades)
+    {
+        FutureTask<Integer> task = getHighestYTask(theUpgrades);
+        task.run(); // Does nothing if it's already running or done.
+        try
+        {
+            return task.get();
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new RuntimeException("Couldn't find the highest reachable y.", e);
+        }
+    }
+
+    // Starts the search of getHighestReachableY() for these upgrades on the executor, so that it's done (or at least started) by the time
+    // a level is checked with them. That's for upgrades the player is about to pick (see LevelPregenerator), since the first level
+    // after picking them would otherwise have to wait for the search, which can take a second.
+    public static void prepareHighestReachableY(int[] theUpgrades, Executor executor)
+    {
+        if (theUpgrades[6] == 0) // With pogo jumps, isRuledOut() doesn't need it.
+        {
+            executor.execute(getHighestYTask(theUpgrades));
+        }
+    }
+
+    // The cached task for these upgrades, or a new one that isn't running yet.
+    private static FutureTask<Integer> getHighestYTask(int[] theUpgrades)
+    {
+        int[] upgradesCopy = theUpgrades.clone(); // The search might run later, after the caller changed its array.
+        String cacheKey = Arrays.toString(upgradesCopy);
+        FutureTask<Integer> task = highestYCache.get(cacheKey);
+        if (task == null)
+        {
+            FutureTask<Integer> newTask = new FutureTask<Integer>(() -> searchHighestReachableY(upgradesCopy));
+            task = highestYCache.putIfAbsent(cacheKey, newTask);
+            if (task == null)
+            {
+                task = newTask;
+            }
+        }
+        return task;
+    }
+
+    private static int searchHighestReachableY(int[] theUpgrades)
+    {
+        GameObjects emptyLevel = new GameObjects(0, false); // Already an empty level like the final one, without generating anything.
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, theUpgrades, emptyLevel);
+        simulation.resetPlayer();
+        ArrayList<Integer> tempActions = new ArrayList<Integer>();
+        int[] dashKeys = {0, GameSimulation.SPACE | GameSimulation.UP, GameSimulation.SPACE | GameSimulation.RIGHT, GameSimulation.SPACE | GameSimulation.UP | GameSimulation.RIGHT};
+        for (int dash : dashKeys)
+        {
+            if (dash == 0 || theUpgrades[4] > 0)
+            {
+                tempActions.add(dash);
+                tempActions.add(dash | GameSimulation.Z);
+                tempActions.add(dash | GameSimulation.C);
+                tempActions.add(dash | GameSimulation.Z | GameSimulation.C);
+            }
+        }
+
+        // x and the x velocity don't matter for going up on an empty level, so every state is moved to the middle and stopped sideways.
+        // Otherwise horizontal movement makes far too many states.
+        HashSet<Long> seen = new HashSet<Long>();
+        ArrayDeque<long[]> queue = new ArrayDeque<long[]>();
+        long[] start = new long[GameSimulation.STATE_SIZE];
+        simulation.saveState(start, 0);
+        seen.add(simulation.getSearchKey());
+        queue.add(start);
+        int highestY = simulation.getPlayerY();
+        while (!queue.isEmpty() && highestY > 0) // Nothing is higher than the top of the screen.
+        {
+            long[] state = queue.poll();
+            state[0] = ((long)(FIELD_SIZE / 2) << 32) | (state[0] & 0xFFFFFFFFL);
+            state[1] = Double.doubleToRawLongBits(0.0);
+            for (int action : tempActions)
+            {
+                simulation.loadState(state, 0);
+                simulation.tick(action);
+                highestY = Math.min(highestY, simulation.getPlayerY());
+                if (seen.size() >= MAX_REACH_STATES)
+                {
+                    highestY = 0; // Too many states to be sure, so don't rule anything out.
+                    queue.clear();
+                    break;
+                }
+                if (seen.add(simulation.getSearchKey()))
+                {
+                    long[] nextState = new long[GameSimulation.STATE_SIZE];
+                    simulation.saveState(nextState, 0);
+                    queue.add(nextState);
+                }
+            }
+        }
+        return highestY;
+    }
+
+    // The inputs the route search tries from every state. Trying all 256 combinations of the 8 gameplay keys would be far too slow,
+    // so only the ones that make sense with the upgrades are used. The waypoint and alignment columns aren't tried.
+    private static int[] createActions(int[] upgrades)
+    {
+        ArrayList<Integer> tempActions = new ArrayList<Integer>();
+        int[] horizontalKeys = {0, GameSimulation.RIGHT, GameSimulation.LEFT};
+        boolean boostsUseful = upgrades[1] > 0 || upgrades[2] > 0 || upgrades[3] > 0;
+        for (int horizontal : horizontalKeys)
+        {
+            tempActions.add(horizontal);
+            tempActions.add(horizontal | GameSimulation.Z);
+            if (boostsUseful)
+            {
+                tempActions.add(horizontal | GameSimulation.C);
+                tempActions.add(horizontal | GameSimulation.Z | GameSimulation.C);
+            }
+            if (upgrades[6] > 0)
+            {
+                tempActions.add(horizontal | GameSimulation.X | GameSimulation.DOWN);
+            }
+        }
+        if (upgrades[4] > 0)
+        {
+            int[] verticalKeys = {0, GameSimulation.UP, GameSimulation.DOWN};
+            for (int horizontal : horizontalKeys)
+            {
+                for (int vertical : verticalKeys)
+                {
+                    if ((horizontal != 0 && (vertical == 0 || upgrades[5] > 0)) || (horizontal == 0 && vertical != 0 && upgrades[5] > 0))
+                    {
+                        tempActions.add(horizontal | vertical | GameSimulation.SPACE);
+                    }
+                }
+            }
+        }
+        int[] result = new int[tempActions.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = tempActions.get(i);
+        }
+        return result;
+    }
+
+    // Adds a key to the visited set. Returns false if it was already there (or if the set is full).
+    private boolean addVisited(long key)
+    {
+        int mask = visited.length() - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        long entry = (visitedStamp << 48) | (hash >>> 16);
+        int index = (int)(hash >>> (64 - VISITED_BITS));
+        while (true)
+        {
+            long current = visited.get(index);
+            if (current == entry)
+            {
+                return false;
+            }
+            if ((current >>> 48) != visitedStamp)
+            {
+                // Keep the table at most half full so that probing stays short.
+                if (visitedCount.get() >= visited.length() / 2)
+                {
+                    return false;
+                }
+                if (visited.compareAndSet(index, current, entry))
+                {
+                    visitedCount.incrementAndGet();
+                    return true;
+                }
+                continue; // Someone else just took this slot, so check it again.
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private int[] buildSolution()
+    {
+        ArrayList<Integer> reversed = new ArrayList<Integer>();
+        long link = goalLink.get();
+        for (int layer = layers.size() - 1; layer >= 0; layer--)
+        {
+            reversed.add(actions[(int)(link & 0xFF)]);
+            link = layers.get(layer)[(int)(link >>> 8) * ENTRY_SIZE + GameSimulation.STATE_SIZE];
+        }
+        int[] result = new int[reversed.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = reversed.get(result.length - 1 - i);
+        }
+        return result;
+    }
+
+    // Tries every action from the kept states [from, to) of the current layer and adds the results as candidates for the next layer.
+    private void expand(int from, int to)
+    {
+        if (System.nanoTime() > deadline || generation.get() != searchGeneration
+            || (expansionBudget > 0 && expansions.addAndGet(to - from) > expansionBudget))
+        {
+            outOfTime = true;
+            return;
+        }
+
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, upgrades, level);
+        for (int i = from; i < to; i++)
+        {
+            for (int action = 0; action < actions.length; action++)
+            {
+                if (goalLink.get() >= 0)
+                {
+                    return;
+                }
+                simulation.loadState(currentLayer, i * ENTRY_SIZE);
+                int result = simulation.tick(actions[action]);
+                if (result == GameSimulation.TICK_GOAL)
+                {
+                    goalLink.compareAndSet(-1, ((long)i << 8) | action);
+                    return;
+                }
+                if (result != GameSimulation.TICK_CONTINUE || !addVisited(simulation.getSearchKey()))
+                {
+                    continue;
+                }
+                int index = candidateCount.getAndIncrement();
+                simulation.saveState(candidates, index * ENTRY_SIZE);
+                candidates[index * ENTRY_SIZE + GameSimulation.STATE_SIZE] = ((long)i << 8) | action;
+                candidateOrder[index] = ((long)getDistance(simulation) << 32) | ((long)getCell(simulation) << 24) | index;
+            }
+        }
+    }
+
+    // Splits expand() over the ForkJoinPool.
+    private class ExpandTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L; // RecursiveAction is Serializable, though these are never serialized.
+        private int from;
+        private int to;
+
+        public ExpandTask(int theFrom, int theTo)
+        {
+            from = theFrom;
+            to = theTo;
+        }
+
+        protected void compute()
+        {
+            if (to - from > SPLIT_THRESHOLD)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExpandTask(from, middle), new ExpandTask(middle, to));
+                return;
+            }
+            expand(from, to);
+        }
+    }
+}
\ No newline at end of file
@@ -18,6 +18,8 @@ import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
 import javax.swing.Timer;
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 public class Main {
@@ -29,7 +31,9 @@ public class Main {
     private static PlayerPanel playerPanel;
     private static KeyInputs keyInputs;
     private static UpgradePanel upgradePanel;
+    private static ReplayRecorder replayRecorder = new ReplayRecorder();
     private static int[] upgrades = new int[9];
+    private static int levelCandidates = 1; // How many levels are generated for each one that's played (see BestOfKGenerator).
     /*
     Index 0 upgrade: Midair jumps.
     Index 1 upgrade: Speed boosts.
@@ -41,10 +45,76 @@ public class Main {
     Index 7 upgrade: Portable Waypoint.
     Index 8 upgrade: Alignment Columns.
     */
-    private static int level = 1;
-    private static int gamePhase = 0; // 0 for start screen, 1 for playing screen, 2 for upgrade screen.
+    // These two are volatile since GameLoop's thread reads them too (see GameLoop).
+    private static volatile int level = 1;
+    private static volatile int gamePhase = 0; // 0 for start screen, 1 for playing screen, 2 for upgrade screen.
     
     public static void main(String[] args) {
+        // The arguments are read before anything else, so that bad ones (see exitWithUsage()) don't open a window first.
+        // The levels are random, but a seed can be given as an argument (e.g. "java Main 12345") to play the same levels again.
+        // "--active-render" switches from the Swing Timer to GameLoop, and "--world" plays the scrolling world (see ChunkedWorld).
+        // "--pack" followed by a file plays the levels in that level pack (see LevelPack) instead of generated ones.
+        // "--best-of" followed by a number generates that many levels for each level and plays the most typical one (see BestOfKGenerator).
+        // "--interpolate" is active rendering that draws at the display's refresh rate (or the one after "--fps") with render interpolation.
+        long seed = new SplittableRandom().nextLong();
+        boolean activeRendering = false;
+        boolean worldMode = false;
+        boolean interpolate = false;
+        int framesPerSecond = 0; // 0 means the display's refresh rate.
+        LevelPack levelPack = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            String arg = args[i];
+            if ((arg.equals("--pack") || arg.equals("--best-of") || arg.equals("--fps")) && i + 1 == args.length)
+            {
+                exitWithUsage(arg + " needs a value after it.");
+            }
+            try
+            {
+                if (arg.equals("--pack"))
+                {
+                    try
+                    {
+                        levelPack = new LevelPack(Paths.get(args[++i]));
+                    }
+                    catch (IOException e)
+                    {
+                        System.err.println("Could not open the level pack: " + e.getMessage());
+                    }
+                }
+                else if (arg.equals("--active-render"))
+                {
+                    activeRendering = true;
+                }
+                else if (arg.equals("--best-of"))
+                {
+                    levelCandidates = Math.max(1, Integer.parseInt(args[++i]));
+                }
+                else if (arg.equals("--interpolate"))
+                {
+                    activeRendering = true;
+                    interpolate = true;
+                }
+                else if (arg.equals("--fps"))
+                {
+                    activeRendering = true;
+                    interpolate = true;
+                    framesPerSecond = Integer.parseInt(args[++i]);
+                }
+                else if (arg.equals("--world"))
+                {
+                    worldMode = true;
+                }
+                else
+                {
+                    seed = Long.parseLong(arg);
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                exitWithUsage("Didn't understand \"" + args[i] + "\".");
+            }
+        }
         // The following setup of a JFrame was copied from the format used in various Unit 13 - Graphics assignments.
         // Technically, the one here is a slightly modified version of the one in Your Moving Ball.
         frame = new JFrame("A Platformer Without Platforms");
@@ -54,7 +124,7 @@ public class Main {
         frame.setSize(gameWidth, gameHeight);
         frame.setLocationRelativeTo(null);
         
-        playerPanel = new PlayerPanel(gameWidth, gameHeight);
+        playerPanel = new PlayerPanel(gameWidth, gameHeight, seed, activeRendering, worldMode, levelPack);
 
         frame.setFocusable(true);
         keyInputs = new KeyInputs();
@@ -72,6 +142,26 @@ public class Main {
         
         frame.add(mainPanel, BorderLayout.CENTER);
         frame.setVisible(true);
+        if (activeRendering)
+        {
+            if (interpolate && framesPerSecond <= 0)
+            {
+                framesPerSecond = GameLoop.getRefreshRate(playerPanel);
+            }
+            new GameLoop(playerPanel, interpolate ? framesPerSecond : 0).start();
+        }
+        
+        // Closing the window exits the program, so this is where the replay of the run gets finished.
+        Runtime.getRuntime().addShutdownHook(new Thread(replayRecorder::stop));
+        Runtime.getRuntime().addShutdownHook(new Thread(LatencyHistogram::dumpAll));
+    }
+    
+    // For arguments that don't make sense: says what's wrong and what the arguments can be (see the start of main()), then exits.
+    private static void exitWithUsage(String problem)
+    {
+        System.err.println(problem);
+        System.err.println("Usage: java Main [seed] [--pack <file>] [--best-of <levels>] [--active-render] [--interpolate] [--fps <frames per second>] [--world]");
+        System.exit(1);
     }
     
     public static void startGame()
@@ -92,8 +182,17 @@ public class Main {
     
     public static void switchToUpgradePhase()
     {
-        cardLayout.show(mainPanel, "u");
+        // With GameLoop, this is called from its thread, but Swing components should only be changed on the Event Dispatch Thread.
+        // The phase changes right away so that the level isn't played (and beaten again) before the switch happens.
         gamePhase = 2;
+        if (SwingUtilities.isEventDispatchThread())
+        {
+            cardLayout.show(mainPanel, "u");
+        }
+        else
+        {
+            SwingUtilities.invokeLater(() -> cardLayout.show(mainPanel, "u"));
+        }
     }
     
     public static void nextLevel()
@@ -114,6 +213,16 @@ public class Main {
         return upgrades;
     }
     
+    public static int getLevelCandidates()
+    {
+        return levelCandidates;
+    }
+    
+    public static ReplayRecorder getReplayRecorder()
+    {
+        return replayRecorder;
+    }
+    
     public static int getLevel()
     {
         return level;
@@ -124,9 +233,10 @@ public class Main {
         return gamePhase;
     }
     
-    public static boolean getIfPressed(String key)
+    // The keys for this tick. See KeyInputs.takeSnapshot().
+    public static InputSnapshot takeInputSnapshot()
     {
-        return keyInputs.getIfPressed(key);
+        return keyInputs.takeSnapshot();
     }
 }
 
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: MovementProfile.java
+ * A MovementProfile is everything about the player's movement that depends on their upgrades, worked out once from the upgrade array
+ * (same indices as Main.getUpgrades()) instead of every tick: the speeds with and without the c boosts, which abilities are there,
+ * and the velocity or distance of a dash or teleport for every direction.
+ * It can't change after it's made. GameSimulation makes a new one whenever the upgrades may have changed (see updateMovementProfile()),
+ * which is only between levels, and each tick just reads from it.
+ * Profiles are shared: every set of upgrades only ever gets one MovementProfile, which of() looks up by the upgrades.
+ *
+ * Everything here is computed with the exact same expressions the tick used to compute every time, so the movement is exactly the same.
+*/
+
+import java.util.concurrent.*;
+
+public class MovementProfile
+{
+    // The three dash kinds (upgrade index 5).
+    public static final int DASH_HORIZONTAL = 0;
+    public static final int DASH_OMNIDIRECTIONAL = 1; // Also used for the invincible dash, which only adds invincibility.
+    public static final int DASH_TELEPORT = 2;
+
+    private static final ConcurrentHashMap<Integer, MovementProfile> PROFILES = new ConcurrentHashMap<Integer, MovementProfile>();
+
+    private final double runAcceleration;
+    private final double boostedRunAcceleration; // While c is held.
+    private final double jumpVelocity;
+    private final double boostedJumpVelocity;
+    private final double boostedGravityMultiplier;
+    private final int midairJumps;
+    private final int dashes; // Midair dashes. 0 means no dashing at all.
+    private final int dashKind;
+    private final boolean invincibleDash;
+    private final boolean pogo;
+    private final boolean pogoRelease;
+    private final boolean waypoint;
+    private final boolean alignmentColumns;
+    private final boolean ufoBeam;
+    // Index (horizontal tilt + 1) * 3 + (vertical tilt + 1). dashPossible says whether space does anything with that tilt.
+    private final boolean[] dashPossible = new boolean[9];
+    private final double[] dashXV = new double[9];
+    private final double[] dashYV = new double[9];
+    private final int[] teleportX = new int[9];
+    private final int[] teleportY = new int[9];
+
+    private MovementProfile(int[] upgrades)
+    {
+        double XVmultiplier = 1 + 0.5 * upgrades[1];
+        double upYVmultiplier = 1 + 0.2 * upgrades[2];
+        runAcceleration = 0.4;
+        boostedRunAcceleration = 0.4 * XVmultiplier;
+        jumpVelocity = -6.0;
+        boostedJumpVelocity = -6.0 * upYVmultiplier;
+        boostedGravityMultiplier = 1 - 0.2 * upgrades[3];
+        midairJumps = upgrades[0];
+        dashes = upgrades[4];
+        if (upgrades[5] == 0)
+        {
+            dashKind = DASH_HORIZONTAL;
+        }
+        else if (upgrades[5] == 2)
+        {
+            dashKind = DASH_TELEPORT;
+        }
+        else
+        {
+            dashKind = DASH_OMNIDIRECTIONAL;
+        }
+        invincibleDash = upgrades[5] == 3;
+        pogo = upgrades[6] > 0;
+        pogoRelease = upgrades[6] > 1;
+        waypoint = upgrades[7] > 0;
+        alignmentColumns = upgrades[8] > 0;
+        ufoBeam = upgrades[8] > 1;
+
+        for (int horizontalTilt = -1; horizontalTilt <= 1; horizontalTilt++)
+        {
+            for (int verticalTilt = -1; verticalTilt <= 1; verticalTilt++)
+            {
+                int index = getTiltIndex(horizontalTilt, verticalTilt);
+                if (dashKind == DASH_HORIZONTAL)
+                {
+                    dashPossible[index] = horizontalTilt != 0;
+                    dashXV[index] = 8.0 * horizontalTilt;
+                    dashYV[index] = 0.0;
+                }
+                else
+                {
+                    dashPossible[index] = horizontalTilt != 0 || verticalTilt != 0;
+                    if (horizontalTilt != 0 && verticalTilt != 0)
+                    {
+                        dashXV[index] = 8.0 / Math.sqrt(2) * horizontalTilt;
+                        dashYV[index] = -8.0 / Math.sqrt(2) * verticalTilt;
+                        teleportX[index] = (int)(96.0 / Math.sqrt(2) * horizontalTilt);
+                        teleportY[index] = (int)(-96.0 / Math.sqrt(2) * verticalTilt);
+                    }
+                    else
+                    {
+                        dashXV[index] = 8.0 * horizontalTilt;
+                        dashYV[index] = -8.0 * verticalTilt;
+                        teleportX[index] = 96 * horizontalTilt;
+                        teleportY[index] = -96 * verticalTilt;
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns the profile for the given upgrades. The array isn't kept, so changing it later doesn't change the profile.
+    public static MovementProfile of(int[] upgrades)
+    {
+        // Every upgrade fits in 3 bits (none of them go past 4), so all 9 of them together make a key.
+        int key = 0;
+        for (int i = 0; i < upgrades.length; i++)
+        {
+            if (upgrades.length > 10 || upgrades[i] < 0 || upgrades[i] > 7)
+            {
+                return new MovementProfile(upgrades); // Can't be made into a key, so it's just not shared.
+            }
+            key |= upgrades[i] << (3 * i);
+        }
+        MovementProfile profile = PROFILES.get(key);
+        if (profile == null)
+        {
+            profile = new MovementProfile(upgrades);
+            MovementProfile existing = PROFILES.putIfAbsent(key, profile);
+            if (existing != null)
+            {
+                profile = existing;
+            }
+        }
+        return profile;
+    }
+
+    public static int getTiltIndex(int horizontalTilt, int verticalTilt)
+    {
+        return (horizontalTilt + 1) * 3 + (verticalTilt + 1);
+    }
+
+    public double getRunAcceleration(boolean boosted)
+    {
+        return boosted ? boostedRunAcceleration : runAcceleration;
+    }
+
+    public double getJumpVelocity(boolean boosted)
+    {
+        return boosted ? boostedJumpVelocity : jumpVelocity;
+    }
+
+    public double getGravityMultiplier(boolean boosted)
+    {
+        return boosted ? boostedGravityMultiplier : 1;
+    }
+
+    public int getMidairJumps()
+    {
+        return midairJumps;
+    }
+
+    public int getDashes()
+    {
+        return dashes;
+    }
+
+    public int getDashKind()
+    {
+        return dashKind;
+    }
+
+    public boolean hasInvincibleDash()
+    {
+        return invincibleDash;
+    }
+
+    public boolean hasPogo()
+    {
+        return pogo;
+    }
+
+    public boolean hasPogoRelease()
+    {
+        return pogoRelease;
+    }
+
+    public boolean hasWaypoint()
+    {
+        return waypoint;
+    }
+
+    public boolean hasAlignmentColumns()
+    {
+        return alignmentColumns;
+    }
+
+    public boolean hasUfoBeam()
+    {
+        return ufoBeam;
+    }
+
+    public boolean isDashPossible(int tiltIndex)
+    {
+        return dashPossible[tiltIndex];
+    }
+
+    public double getDashXV(int tiltIndex)
+    {
+        return dashXV[tiltIndex];
+    }
+
+    public double getDashYV(int tiltIndex)
+    {
+        return dashYV[tiltIndex];
+    }
+
+    public int getTeleportX(int tiltIndex)
+    {
+        return teleportX[tiltIndex];
+    }
+
+    public int getTeleportY(int tiltIndex)
+    {
+        return teleportY[tiltIndex];
+    }
+}
\ No newline at end of file
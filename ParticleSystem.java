@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: ParticleSystem.java
+ * The ParticleSystem stores and draws the visual effects spawned by GameSimulation (jumps, dashes, and teleports).
+ * It replaces the old SpecialEffects objects. Each effect used to be its own object with its own Color, every frame of every effect
+ * made a new int[5], and finished effects were removed from the middle of an ArrayList. With hundreds of effects, that's a lot of
+ * garbage every frame, and garbage collection pauses can make the game skip frames.
+ * Here every effect is just an index into a few parallel arrays with a fixed capacity (struct of arrays), finished effects are removed
+ * by moving the last effect into their place (swap remove), and all the colors are made once up front.
+ * So spawning, updating, and drawing effects never allocates anything.
+ * The ovals are drawn ahead of time into small images too (one per size), since Java2D allocates a shape for every fillOval() call.
+ * Note that the visual effects that impact the platforming experience aren't handled here.
+*/
+
+import java.awt.*;
+import java.awt.image.*;
+
+public class ParticleSystem
+{
+    /*
+    ID 0: Jump effect.
+    ID 1: Dash effect.
+    ID 2: Teleport effect.
+    */
+    public static final int JUMP = 0;
+    public static final int DASH = 1;
+    public static final int TELEPORT = 2;
+
+    public static final int CAPACITY = 1024; // Effects spawned while this many are active are dropped.
+    private static final int DURATION = 15; // In ticks.
+
+    // The jump and teleport effects are always the same color. Dash effects get lighter as the dash goes on (see GameSimulation.spawnEffect()),
+    // from 195 at the end of a dash up to 255 at the start of one, so there's one gray for each dash tick.
+    private static final Color JUMP_COLOR = new Color(224, 255, 255);
+    private static final Color TELEPORT_COLOR = new Color(96, 80, 242);
+    private static final Color[] DASH_COLORS = new Color[13];
+    static
+    {
+        for (int i = 0; i < DASH_COLORS.length; i++)
+        {
+            int tempShade = 195 + 5 * i;
+            DASH_COLORS[i] = new Color(tempShade, tempShade, tempShade);
+        }
+    }
+
+    // JUMP_SPRITES[age] is the jump oval after age ticks. Age 0 has no size, so it's null.
+    private static final BufferedImage[] JUMP_SPRITES = new BufferedImage[DURATION + 1];
+    private static final BufferedImage TELEPORT_SPRITE = createOval(32, 32, TELEPORT_COLOR);
+    static
+    {
+        for (int age = 1; age <= DURATION; age++)
+        {
+            JUMP_SPRITES[age] = createOval(2 * age, age, JUMP_COLOR);
+        }
+    }
+
+    private int[] ids = new int[CAPACITY];
+    private int[] effectXs = new int[CAPACITY];
+    private int[] effectYs = new int[CAPACITY];
+    private int[] durations = new int[CAPACITY];
+    private Color[] colors = new Color[CAPACITY];
+    private int count = 0;
+
+    public ParticleSystem()
+    {
+    }
+
+    // Adds an effect at the player's position. dashTicksLeft is only used by dash effects.
+    public void spawn(int ID, int playerX, int playerY, int dashTicksLeft)
+    {
+        if (count == CAPACITY)
+        {
+            return;
+        }
+        ids[count] = ID;
+        effectXs[count] = playerX;
+        effectYs[count] = playerY;
+        durations[count] = DURATION;
+        if (ID == JUMP)
+        {
+            colors[count] = JUMP_COLOR;
+        }
+        else if (ID == DASH)
+        {
+            colors[count] = DASH_COLORS[Math.max(0, Math.min(DASH_COLORS.length - 1, dashTicksLeft))];
+        }
+        else
+        {
+            colors[count] = TELEPORT_COLOR;
+        }
+        count++;
+    }
+
+    // Adds every effect spawned during the last tick of the simulation.
+    public void spawnAll(GameSimulation simulation)
+    {
+        int[] tempData = simulation.getSpawnedEffects();
+        for (int i = 0; i < simulation.getSpawnedEffectCount(); i++)
+        {
+            int index = GameSimulation.EFFECT_DATA_SIZE * i;
+            spawn(tempData[index], tempData[index + 1], tempData[index + 2], tempData[index + 3]);
+        }
+    }
+
+    // Ages every effect by one tick and removes the ones that are done.
+    public void update()
+    {
+        int i = 0;
+        while (i < count)
+        {
+            durations[i]--;
+            if (durations[i] <= 0)
+            {
+                remove(i); // The last effect is now at i, so i stays the same.
+            }
+            else
+            {
+                i++;
+            }
+        }
+    }
+
+    // Draws every effect. This doesn't change anything, so it can be called any number of times between update()s.
+    // A lot of the sizes here are based on player size. They work because player size is currently constant (it's 16).
+    public void draw(Graphics g)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            int age = 16 - durations[i];
+            if (ids[i] == JUMP)
+            {
+                g.drawImage(JUMP_SPRITES[age], effectXs[i] + 8 - age, effectYs[i] + 16, null);
+            }
+            else if (ids[i] == DASH)
+            {
+                g.setColor(colors[i]);
+                g.fillRect(effectXs[i], effectYs[i], 16, 16);
+            }
+            else
+            {
+                g.drawImage(TELEPORT_SPRITE, effectXs[i] - 8, effectYs[i] - 8, null);
+            }
+        }
+    }
+
+    // Sets bounds to the smallest rectangle around everything draw() would draw right now (an empty rectangle if there are no effects).
+    public void getBounds(Rectangle bounds)
+    {
+        if (count == 0)
+        {
+            bounds.setBounds(0, 0, 0, 0);
+            return;
+        }
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++)
+        {
+            // Same positions and sizes as in draw().
+            int age = 16 - durations[i];
+            int x = effectXs[i];
+            int y = effectYs[i];
+            int width = 16;
+            int height = 16;
+            if (ids[i] == JUMP)
+            {
+                x += 8 - age;
+                y += 16;
+                width = 2 * age;
+                height = age;
+            }
+            else if (ids[i] == TELEPORT)
+            {
+                x -= 8;
+                y -= 8;
+                width = 32;
+                height = 32;
+            }
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width);
+            maxY = Math.max(maxY, y + height);
+        }
+        bounds.setBounds(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    private static BufferedImage createOval(int width, int height, Color color)
+    {
+        BufferedImage sprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = sprite.createGraphics();
+        g.setColor(color);
+        g.fillOval(0, 0, width, height);
+        g.dispose();
+        return sprite;
+    }
+
+    private void remove(int index)
+    {
+        count--;
+        ids[index] = ids[count];
+        effectXs[index] = effectXs[count];
+        effectYs[index] = effectYs[count];
+        durations[index] = durations[count];
+        colors[index] = colors[count];
+    }
+
+    public void clear()
+    {
+        count = 0;
+    }
+
+    public int getCount()
+    {
+        return count;
+    }
+}
\ No newline at end of file
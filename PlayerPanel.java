@@ -4,64 +4,127 @@
 */
 
 /** File name: PlayerPanel.java
- * The PlayerPanel is what manages the movement of the player, with all of their abilities, in this platformer.
- * A PlayerPanel object is created by Main, and PlayerPanel works together with GameObjects, KeyInputs, and SpecialEffects to do its job.
+ * The PlayerPanel is what shows the player, with all of their abilities, in this platformer.
+ * A PlayerPanel object is created by Main, and PlayerPanel works together with GameSimulation, KeyInputs, and ParticleSystem to do its job.
+ * The movement itself is simulated by GameSimulation. PlayerPanel feeds it the keyboard input every Timer tick and then draws its state.
+ * With active rendering (see GameLoop), there's no Timer and GameLoop calls update() and render() from its own thread instead.
+ * With render interpolation, GameLoop draws more often than it ticks, and the player is drawn between their last two positions.
+ * With the Timer, only the parts of the panel that changed are repainted (see repaintChanges()), so screens where nothing moves cost nothing.
+ * Every level is also given to a RouteSolver, whose fastest route and par time are shown as a hint when H is pressed.
+ * In the scrolling world mode (see ChunkedWorld), the view follows the player to the right and only the chunks on screen are drawn.
  * Note that some parts of resetting a level is managed here too.
  * The PlayerPanel also manages the start screen and win screen.
 */
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.*;
 import javax.swing.*;
 import javax.swing.Timer;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class PlayerPanel extends JPanel implements ActionListener
 {
+    private static final long VERIFY_MILLIS = 250; // How long the LevelVerifier gets to look for a way to the goal of each pre-generated level.
+    
     // Warning: the game doesn't 100% scale with window size (or player size for that matter).
     private int gameWidth;
     private int gameHeight;
     private long startTime;
     private long endTime;
     private boolean gameWon = false;
+    private String winTimeText = "";
+    // Ticks run at a fixed rate (GameSimulation.TICK_NANOS) no matter how often the Timer actually fires. This is when the next one is due.
+    private long nextTickTime = 0;
+    private static final long MAX_LATE_NANOS = 5 * GameSimulation.TICK_NANOS; // Falling further behind than this skips ticks instead.
+    private long lastTimerTime = 0;
     
-    private int playerX = 25;
-    private int playerY = 384;
-    private int playerSize = 16;
-    private double playerXV = 0;
-    private double playerYV = 0;
-    private Rectangle playerRect = new Rectangle(25, 384, 16, 16); // This rectangle (and some others) are used for collision detection.
-    
-    private boolean onPlatform = false;
-    private int currentMidairJumps = 0;
-    private int currentMidairDashes = 0;
-    private boolean jumpHeld = false;
-    
-    private GameObjects gameObjects; // The red obstacles and the green goal are done in GameObjects.
-    private boolean resettingLevel = false; // To deal with a bug where resetting and having the goal go to the player location counted as a level complete.
-    private boolean resetHeld = false;
-    
-    private boolean dashHeld = false;
-    private double[] dashingData = new double[3]; // The indices are for: x velocity, y velocity, step()s left.
+    // The latency overlay (toggled with F3). Its text is only made again every STATS_REFRESH_TICKS so that it's readable and cheap.
+    private static final int STATS_REFRESH_TICKS = 30;
+    private boolean showStats = false;
+    private int statsTicks = 0;
+    private String[] statsLines = new String[0];
+    private Font statsFont = new Font(Font.MONOSPACED, Font.PLAIN, 11);
     
-    private boolean attackHeld = false;
-    private Rectangle pogoHitbox = new Rectangle(30, 400, 6, 12);
-    private boolean pogoing = false;
-    private boolean pogoHit = false;
-    private int teleportPhase = 0; // Phase 0: initial state, nothing happens. Phase 1: The thing happens. Phase 2: The thing is over, nothing happens.
-    private Rectangle waypoint;
-    private int alignmentColumnPhase = 0; // See right above for the phase description (it's the same here).
-    private int leftAlignmentColumnX;
-    private int rightAlignmentColumnX;
+    private GameSimulation simulation; // The player, their abilities, and the level itself are simulated in GameSimulation.
     
     private Font titleFont = new Font(Font.SERIF, Font.BOLD, 32);
     private Font secondaryFont = new Font(Font.DIALOG, Font.PLAIN, 24);
     private Font instructionFont = new Font(Font.DIALOG, Font.PLAIN, 14);
+    private Font levelFont = new Font(Font.DIALOG, Font.PLAIN, 32);
     private boolean instructions = false;
     
-    private ArrayList<SpecialEffects> specialEffects = new ArrayList<SpecialEffects>();
+    // Colors and text used every frame are made once so that drawing a frame doesn't allocate anything.
+    private static final Color ALIGNMENT_AREA_COLOR = new Color(128, 150, 128);
+    private static final Color ALIGNMENT_LINE_COLOR = new Color(255, 255, 0);
+    private static final Color WAYPOINT_COLOR = new Color(128, 0, 128);
+    private static final Color ROUTE_COLOR = new Color(255, 255, 255, 160);
+    private String levelText = "";
+    private int levelTextLevel = -1;
+    
+    private ParticleSystem particles = new ParticleSystem();
+    
+    // The obstacles and goal only change when a level is generated, so they're drawn once into this image, which is then drawn every frame
+    // in one call. It's a compatible image so that Java2D can keep a copy of it in video memory.
+    // It's drawn again when the level (the GameObjects object or its version) or the panel size changes.
+    private BufferedImage staticLayer;
+    private GameObjects staticLayerLevel;
+    private int staticLayerVersion;
+    
+    private ChunkedWorld world; // Null unless the game is in the scrolling world mode.
+    private boolean usingLevelPack = false;
+    
+    // The route hint (toggled with H). The RouteSolver is told about every new level, and to plan again whenever the player places
+    // the waypoint or the alignment columns (and to go back to the route from the start when they die after that).
+    private RouteSolver routeSolver; // Null in the scrolling world mode, which has no goal.
+    private boolean showRoute = false;
+    private GameObjects routeLevel;
+    private int routeLevelVersion;
+    private boolean routeReplanned = false;
+    private int lastTeleportPhase = 0;
+    private int lastAlignmentColumnPhase = 0;
+    private long[] routeState = new long[GameSimulation.STATE_SIZE];
+    private String parText = "";
+    private int parTextTicks = -2;
+    
+    // Render interpolation (see GameLoop). The player's position after each of the last two ticks, so that a frame drawn between ticks
+    // can show the player part of the way from one to the other. Every tick writes over the older slot and then makes it the current one,
+    // so nothing is allocated. The waypoint and the effects never move once they're placed, so only the player (and the pogo hitbox and
+    // the camera, which follow the player) need this.
+    private static final int MAX_INTERPOLATED_MOVE = 32; // Moves longer than this in one tick can only be teleports, so they aren't slid.
+    private int[] renderXs = new int[2];
+    private int[] renderYs = new int[2];
+    private int currentRenderSlot = 0;
+    
+    // Dirty-rectangle repainting (Timer only, GameLoop always draws whole frames). After the ticks of a Timer firing, only the union of
+    // where the moving things were at the last repaint() and where they are now is repainted.
+    // The painted* fields are what was on screen at the last repaint() (rectangles are empty for things that weren't drawn).
+    private static final int LEVEL_TEXT_HEIGHT = 40; // The level counter is drawn in the top this many pixels.
+    private boolean repaintAll = true; // Set when most of the panel changes (a new level, another screen, ...).
+    private int paintedPhase = -1;
+    private boolean paintedInstructions = false;
+    private boolean paintedGameWon = false;
+    private boolean paintedShowStats = false;
+    private boolean paintedShowRoute = false;
+    private RouteSolver.Route paintedRoute;
+    private String[] paintedStatsLines;
+    private String paintedLevelText;
+    private int paintedCameraX = 0;
+    private Rectangle paintedPlayer = new Rectangle();
+    private Rectangle paintedPogoHitbox = new Rectangle();
+    private Rectangle paintedEffects = new Rectangle();
+    private Rectangle paintedWaypoint = new Rectangle();
+    private Rectangle paintedColumns = new Rectangle();
+    private Rectangle effectBounds = new Rectangle(); // Filled in by ParticleSystem.getBounds(), kept so that nothing is allocated.
+    // The union of everything that changed so far. Empty while dirtyMinX is Integer.MAX_VALUE.
+    private int dirtyMinX = Integer.MAX_VALUE;
+    private int dirtyMinY = Integer.MAX_VALUE;
+    private int dirtyMaxX = Integer.MIN_VALUE;
+    private int dirtyMaxY = Integer.MIN_VALUE;
 
-    public PlayerPanel(int theGameWidth, int theGameHeight)
+    public PlayerPanel(int theGameWidth, int theGameHeight, long seed, boolean activeRendering, boolean worldMode,
+        LevelPack levelPack)
     {
         // Background, focusable, key listener, mouse listener, and timer originally copied from my version of "Your Moving Ball".
         // Since then some of those have been deleted.
@@ -70,369 +133,393 @@ public class PlayerPanel extends JPanel implements ActionListener
         gameHeight = theGameHeight;
         setBackground(Color.GRAY);
 
-        Timer timer = new Timer(1000/60, this);
-        timer.start();
+        if (!activeRendering)
+        {
+            Timer timer = new Timer(GameSimulation.TICK_MILLIS, this);
+            timer.start();
+        }
         
-        gameObjects = new GameObjects();
+        simulation = new GameSimulation(0, 0, Main.getUpgrades(), seed); // The real size is only known once the panel is shown.
+        if (worldMode)
+        {
+            // The chunks of the world are generated by its own background thread, so the LevelPregenerator isn't needed.
+            world = new ChunkedWorld(seed);
+            world.start();
+            simulation.setWorld(world);
+            return;
+        }
+        // The solver only gets its own thread (at the lowest priority), so that it never slows down the game or the other searches.
+        routeSolver = new RouteSolver(null);
+        routeSolver.start();
+        if (levelPack != null)
+        {
+            // Levels from a pack load instantly, so they don't need to be pre-generated either.
+            usingLevelPack = true;
+            simulation.setLevelPack(levelPack, seed);
+            simulation.resetLevel(1);
+            return;
+        }
+        // New levels are generated in the background so that beating a level or pressing r never has to wait for generateLevel().
+        LevelPregenerator levelPregenerator = new LevelPregenerator(seed);
+        levelPregenerator.setVerifier(new LevelVerifier(ForkJoinPool.commonPool(), VERIFY_MILLIS));
+        if (Main.getLevelCandidates() > 1)
+        {
+            levelPregenerator.setGenerator(new BestOfKGenerator(Main.getLevelCandidates(), ForkJoinPool.commonPool()));
+        }
+        levelPregenerator.start();
+        simulation.setLevelPregenerator(levelPregenerator);
     }
     
-    public void resetLevel()
+    public synchronized void resetLevel()
     {
-        resettingLevel = true;
-        resetPlayer();
-        gameObjects.generateLevel();
-        specialEffects.clear();
-        resettingLevel = false;
+        simulation.resetLevel(Main.getLevel());
+        particles.clear();
+        recordRenderPosition(true);
+        repaintAll = true;
     }
     
-    public void resetPlayer()
+    public void actionPerformed(ActionEvent e)
     {
-        playerX = 25;
-        playerY = 384;
-        playerRect.setLocation(playerX, playerY); // Dealing with the bug related to level completion upon player reset.
-        playerXV = 0;
-        playerYV = 0;
-        onPlatform = true;
-        currentMidairJumps = 0;
-        currentMidairDashes = 0;
-        dashingData = new double[3];
-        pogoing = false;
-        pogoHit = false;
-        teleportPhase = 0;
-        alignmentColumnPhase = 0;
+        long now = System.nanoTime();
+        if (lastTimerTime != 0)
+        {
+            LatencyHistogram.LATENESS.record(now - lastTimerTime - GameSimulation.TICK_MILLIS * 1000000L);
+        }
+        lastTimerTime = now;
+        runDueTicks(now);
+        repaintChanges();
     }
     
-    public void actionPerformed(ActionEvent e)
+    // Repaints the parts of the panel that look different now than at the last repaint(). Nothing is repainted if nothing changed,
+    // or if the panel isn't showing (e.g. the UpgradePanel is in front of it), since Swing paints all of it when it's shown again anyway.
+    // Only called on the Event Dispatch Thread, which is also where the ticks happen with the Timer.
+    private void repaintChanges()
     {
-        // As stated in Main, 0 for start screen, 1 for playing screen, 2 for upgrade screen.
-        if (Main.getGamePhase() == 0)
+        if (!isShowing())
         {
-            if (Main.getIfPressed("p") && !instructions)
+            repaintAll = true;
+            return;
+        }
+        int phase = Main.getGamePhase();
+        RouteSolver.Route route = routeSolver != null ? routeSolver.getRoute() : null;
+        if (phase != paintedPhase || instructions != paintedInstructions || gameWon != paintedGameWon || showStats != paintedShowStats
+            || (showStats && statsLines != paintedStatsLines) || showRoute != paintedShowRoute || (showRoute && route != paintedRoute))
+        {
+            repaintAll = true;
+            paintedPhase = phase;
+            paintedInstructions = instructions;
+            paintedGameWon = gameWon;
+            paintedShowStats = showStats;
+            paintedStatsLines = statsLines;
+            paintedShowRoute = showRoute;
+            paintedRoute = route;
+        }
+        
+        if (phase == 1)
+        {
+            // Everything here is in screen coordinates. In the scrolling world, the whole view changes whenever the camera moves.
+            int cameraX = getCameraX(simulation.getPlayerX());
+            if (cameraX != paintedCameraX)
             {
-                startTime = System.currentTimeMillis();
-                Main.startGame();
+                repaintAll = true;
+                paintedCameraX = cameraX;
             }
-            if (Main.getIfPressed("d") && !instructions)
+            Rectangle playerRect = simulation.getPlayerRect();
+            markMoved(paintedPlayer, playerRect.x - cameraX, playerRect.y, playerRect.width, playerRect.height);
+            if (simulation.isPogoing())
             {
-                instructions = true;
+                Rectangle pogoHitbox = simulation.getPogoHitbox();
+                markMoved(paintedPogoHitbox, pogoHitbox.x - cameraX, pogoHitbox.y, pogoHitbox.width, pogoHitbox.height);
             }
-            if (Main.getIfPressed("b") && instructions)
+            else
             {
-                instructions = false;
+                markMoved(paintedPogoHitbox, 0, 0, 0, 0);
+            }
+            if (simulation.getTeleportPhase() == 1)
+            {
+                Rectangle waypoint = simulation.getWaypoint();
+                markMoved(paintedWaypoint, waypoint.x - cameraX, waypoint.y, waypoint.width, waypoint.height);
+            }
+            else
+            {
+                markMoved(paintedWaypoint, 0, 0, 0, 0);
+            }
+            if (simulation.getAlignmentColumnPhase() == 1)
+            {
+                int leftAlignmentColumnX = simulation.getLeftAlignmentColumnX();
+                markMoved(paintedColumns, leftAlignmentColumnX - cameraX, 0, simulation.getRightAlignmentColumnX() - leftAlignmentColumnX + 1,
+                    getHeight());
+            }
+            else
+            {
+                markMoved(paintedColumns, 0, 0, 0, 0);
+            }
+            // Effects change every tick while there are any (the jump oval grows, old effects disappear), so they're always repainted.
+            if (particles.getCount() > 0 || !paintedEffects.isEmpty())
+            {
+                particles.getBounds(effectBounds);
+                markDirty(paintedEffects.x, paintedEffects.y, paintedEffects.width, paintedEffects.height);
+                markDirty(effectBounds.x - cameraX, effectBounds.y, effectBounds.width, effectBounds.height);
+                paintedEffects.setBounds(effectBounds.x - cameraX, effectBounds.y, effectBounds.width, effectBounds.height);
+            }
+            if (levelText != paintedLevelText)
+            {
+                markDirty(0, 0, getWidth(), LEVEL_TEXT_HEIGHT);
+                paintedLevelText = levelText;
             }
         }
-        else if (Main.getGamePhase() == 1)
+        
+        if (repaintAll)
         {
-            step();
+            repaint();
+            repaintAll = false;
         }
-        else if (Main.getGamePhase() == 2)
+        else if (dirtyMinX != Integer.MAX_VALUE)
         {
+            repaint(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX, dirtyMaxY - dirtyMinY);
         }
-        
-        repaint();
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
     }
     
-    public void step()
+    // If something is somewhere else (or a different size) than it was at the last repaint(), both places need to be repainted.
+    private void markMoved(Rectangle painted, int x, int y, int width, int height)
     {
-        // Keys with these booleans generally aren't meant to work while held, only when pressed.
-        // These booleans work with the "__Held" versions of themselves to achieve this.
-        boolean jumpPressed = false;
-        boolean resetPressed = false;
-        boolean dashPressed = false;
-        boolean attackPressed = false;
-        
-        // These variables are for the upgrades related to pressing "c".
-        double XVmultiplier = 1;
-        double upYVmultiplier = 1;
-        double gravityYVmultiplier = 1;
-        
-        // These variables find the net tilt from the arrow keys (used for "directional input").
-        int horizontalTilt = 0;
-        int verticalTilt = 0;
-        
-        if (Main.getIfPressed("c"))
+        if (painted.x != x || painted.y != y || painted.width != width || painted.height != height)
         {
-            XVmultiplier = 1 + 0.5 * Main.getUpgrades()[1];
-            upYVmultiplier = 1 + 0.2 * Main.getUpgrades()[2];
-            gravityYVmultiplier = 1 - 0.2 * Main.getUpgrades()[3];
+            markDirty(painted.x, painted.y, painted.width, painted.height);
+            markDirty(x, y, width, height);
+            painted.setBounds(x, y, width, height);
         }
-        
-        if (Main.getIfPressed("right"))
+    }
+    
+    private void markDirty(int x, int y, int width, int height)
+    {
+        if (width <= 0 || height <= 0)
         {
-            playerXV += 0.4 * XVmultiplier;
-            horizontalTilt++;
+            return;
         }
-        if (Main.getIfPressed("left"))
+        dirtyMinX = Math.min(dirtyMinX, x);
+        dirtyMinY = Math.min(dirtyMinY, y);
+        dirtyMaxX = Math.max(dirtyMaxX, x + width);
+        dirtyMaxY = Math.max(dirtyMaxY, y + height);
+    }
+    
+    // Runs update() once for every tick that is due by now. The Timer can only fire every 16ms, and it can fire late or merge firings
+    // when the Event Dispatch Thread is busy, so counting ticks by time keeps the game at exactly 60 ticks per second either way.
+    public void runDueTicks(long now)
+    {
+        if (nextTickTime == 0 || now - nextTickTime > MAX_LATE_NANOS)
         {
-            playerXV -= 0.4 * XVmultiplier;
-            horizontalTilt--;
+            nextTickTime = now;
         }
-        if (Main.getIfPressed("z"))
+        while (now - nextTickTime >= 0)
         {
-            jumpPressed = true;
-            if (!jumpHeld)
-            {
-                dashingData[2] = 0; // Dashes can be canceled by jumps (not necessarily pogo jumps though).
-                if (onPlatform)
-                {
-                    playerYV = -6.0 * upYVmultiplier;
-                    specialEffects.add(new SpecialEffects(0, playerX, playerY, new Color(224, 255, 255)));
-                }
-                else if (currentMidairJumps < Main.getUpgrades()[0])
-                {
-                    playerYV = -6.0 * upYVmultiplier;
-                    currentMidairJumps++;
-                    specialEffects.add(new SpecialEffects(0, playerX, playerY, new Color(224, 255, 255)));
-                }
-            }
+            update();
+            nextTickTime += GameSimulation.TICK_NANOS;
         }
-        if (Main.getIfPressed("up"))
+    }
+    
+    // Everything that happens once per tick. All of the game's state changes here (or in GameSimulation), so drawing only reads it
+    // and it doesn't matter how often the panel is drawn.
+    public synchronized void update()
+    {
+        InputSnapshot input = Main.takeInputSnapshot();
+        if (input.wasPressed(GameSimulation.F3))
         {
-            verticalTilt++;
+            showStats = !showStats;
+            statsTicks = 0;
         }
-        if (Main.getIfPressed("down"))
+        if (input.wasPressed(GameSimulation.H) && routeSolver != null)
         {
-            verticalTilt--;
+            showRoute = !showRoute;
         }
-        
-        // Level reset.
-        if (Main.getIfPressed("r"))
+        if (showStats && statsTicks-- <= 0)
         {
-            resetPressed = true;
-            if (!resetHeld)
-            {
-                resetLevel();
-                resetHeld = resetPressed; // There's a need for a copy of this here to make sure things are updating in BOTH cases (pressed and not pressed).
-                return;
-            }
+            updateStatsLines();
+            statsTicks = STATS_REFRESH_TICKS;
         }
         
-        // Pogo Jump (key x) that uses down tilt.
-        // Note: I never said that pogo jumps cancel dashes, only that jumps cancel dashes.
-        if (Main.getIfPressed("x"))
+        // As stated in Main, 0 for start screen, 1 for playing screen, 2 for upgrade screen.
+        if (Main.getGamePhase() == 0)
         {
-            attackPressed = true;
-            if (Main.getUpgrades()[6] > 0 && verticalTilt == -1)
+            if (input.isHeld(GameSimulation.P) && !instructions)
             {
-                pogoing = true;
-                // The rest of pogo jump is dealt in the paintComponent method.
+                startTime = System.currentTimeMillis();
+                Main.startGame();
+                recordRenderPosition(true);
+                // Every run is recorded so that it can be played again with ReplayPlayer
+                // (except in the world mode or with a level pack, which replays don't support).
+                if (world == null && !usingLevelPack && Main.getReplayRecorder().start(Main.getUpgrades()) != null)
+                {
+                    simulation.setReplayRecorder(Main.getReplayRecorder());
+                }
             }
-            else
+            if (input.isHeld(GameSimulation.D) && !instructions)
+            {
+                instructions = true;
+            }
+            if (input.isHeld(GameSimulation.B) && instructions)
             {
-                pogoing = false;
-                pogoHit = false;
+                instructions = false;
             }
         }
-        else
+        else if (Main.getGamePhase() == 1)
         {
-            // Pogo Release upgrade.
-            if (Main.getUpgrades()[6] > 1 && pogoing && pogoHit)
-            {
-                playerYV = -6.0;
-            }
-            
-            pogoing = false;
-            pogoHit = false;
+            step(input);
         }
+        else if (Main.getGamePhase() == 2)
+        {
+        }
+    }
+    
+    public void step(InputSnapshot input)
+    {
+        long tickStart = System.nanoTime();
+        // It appears that the game's dimensions start at 0 initially, so GameSimulation ignores the screen edges until then.
+        // The scrolling world has no right edge, so its width is always left at 0.
+        simulation.setFieldSize(world != null ? 0 : getWidth(), getHeight());
+        int result = simulation.tick(input.getHeld());
         
-        // Portable Waypoint (key x) that uses neutral tilt (both or neither up and down).
-        if (Main.getIfPressed("x"))
+        particles.update();
+        particles.spawnAll(simulation);
+        recordRenderPosition(result != GameSimulation.TICK_CONTINUE || spawnedTeleport());
+        if (routeSolver != null)
         {
-            attackPressed = true;
-            if (!attackHeld && Main.getUpgrades()[7] > 0 && verticalTilt == 0)
-            {
-                if (teleportPhase == 0)
-                {
-                    waypoint = new Rectangle(playerX, playerY, playerSize, playerSize);
-                    teleportPhase++;
-                    // Some stuff for this ability is done in the paintComponent method.
-                }
-                else if (teleportPhase == 1)
-                {
-                    specialEffects.add(new SpecialEffects(2, playerX, playerY, new Color(96, 80, 242)));
-                    playerX = waypoint.x;
-                    playerY = waypoint.y;
-                    specialEffects.add(new SpecialEffects(2, playerX, playerY, new Color(96, 80, 242)));
-                    playerXV = 0;
-                    playerYV = 0;
-                    teleportPhase++;
-                }
-            }
+            updateRoute(result);
         }
         
-        // Alignment Column (key x) that uses up tilt.
-        if (Main.getIfPressed("x"))
+        if (result != GameSimulation.TICK_CONTINUE)
         {
-            attackPressed = true;
-            if (!attackHeld && Main.getUpgrades()[8] > 0 && verticalTilt == 1)
-            {
-                if (alignmentColumnPhase == 0)
-                {
-                    leftAlignmentColumnX = playerX + (playerSize / 2) - 16;
-                    rightAlignmentColumnX = playerX + (playerSize / 2) + 16;
-                    alignmentColumnPhase++;
-                    // With this starting point, some work is done in the paintComponent method.
-                }
-                else if (alignmentColumnPhase == 1)
-                {
-                    alignmentColumnPhase++;
-                }
-            }
+            repaintAll = true; // The level (or the world's chunks) may have changed.
         }
-        if (Main.getUpgrades()[8] > 1 && alignmentColumnPhase == 1) // UFO Beam upgrade to Alignment Column.
+        if (result == GameSimulation.TICK_LEVEL_RESET)
         {
-            gravityYVmultiplier -= 0.4;
+            particles.clear();
         }
-        
-        // Various dashes (space bar) that are based on tilt.
-        if (Main.getIfPressed("space") && Main.getUpgrades()[4] > 0 && (onPlatform || currentMidairDashes < Main.getUpgrades()[4]))
+        else if (result == GameSimulation.TICK_GOAL)
         {
-            dashPressed = true;
-            if (!dashHeld && Main.getUpgrades()[5] == 0 && horizontalTilt != 0)
-            {
-                // Horizontal dashes.
-                if (!onPlatform)
-                {
-                    currentMidairDashes++;
-                }
-                dashingData[0] = 8.0 * horizontalTilt;
-                dashingData[1] = 0.0;
-                dashingData[2] = 12;
-            }
-            else if (!dashHeld && Main.getUpgrades()[5] > 0 && (horizontalTilt != 0 || verticalTilt != 0))
-            {
-                // Omnidirectional dashes (indices 1 and 3) and teleports (index 2).
-                if (!onPlatform)
-                {
-                    currentMidairDashes++;
-                }
-                
-                if (Main.getUpgrades()[5] != 2)
-                {
-                    if (horizontalTilt != 0 && verticalTilt != 0)
-                    {
-                        dashingData[0] = 8.0 / Math.sqrt(2) * horizontalTilt;
-                        dashingData[1] = -8.0 / Math.sqrt(2) * verticalTilt;
-                        dashingData[2] = 12;
-                    }
-                    else
-                    {
-                        dashingData[0] = 8.0 * horizontalTilt;
-                        dashingData[1] = -8.0 * verticalTilt;
-                        dashingData[2] = 12;
-                    }
-                    // Invincibility while dashing is implemented at the collision detection code in the paintComponent method.
-                }
-                else
-                {
-                    specialEffects.add(new SpecialEffects(2, playerX, playerY, new Color(96, 80, 242)));
-                    if (horizontalTilt != 0 && verticalTilt != 0)
-                    {
-                        playerX += (int)(96.0 / Math.sqrt(2) * horizontalTilt);
-                        playerY += (int)(-96.0 / Math.sqrt(2) * verticalTilt);
-                    }
-                    else
-                    {
-                        playerX += 96 * horizontalTilt;
-                        playerY += -96 * verticalTilt;
-                    }
-                    specialEffects.add(new SpecialEffects(2, playerX, playerY, new Color(96, 80, 242)));
-                    playerXV = 0;
-                    playerYV = 0;
-                }
-            }
+            Main.nextLevel();
         }
         
-        // Reminder: Keys with these booleans generally aren't meant to work while held, only when pressed.
-        jumpHeld = jumpPressed;
-        resetHeld = resetPressed;
-        dashHeld = dashPressed;
-        attackHeld = attackPressed;
-        
-        // Dashes override typical movement. Some of those details are done here.
-        if (dashingData[2] > 0)
+        if (world != null)
         {
-            playerXV = dashingData[0];
-            playerYV = dashingData[1];
-            dashingData[2]--;
-            if (dashingData[2] % 4 == 0)
-            {
-                specialEffects.add(new SpecialEffects(1, playerX, playerY, new Color(195 + 5 * (int)(dashingData[2]), 195 + 5 * (int)(dashingData[2]), 195 + 5 * (int)(dashingData[2]))));
-            }
-            // A nerf to the end speed from vertical dashes.
-            if (dashingData[2] == 0)
+            if (levelTextLevel != world.getFurthestChunk())
             {
-                playerYV /= 2;
+                levelTextLevel = world.getFurthestChunk();
+                levelText = "Chunk: " + (levelTextLevel + 1);
             }
         }
-        
-        // Player acceleration and friction.
-        playerXV *= 0.85;
-        playerX += (int)(playerXV);
-        playerY += (int)(playerYV);
-        
-        // Code to prevent the player from escaping the alignment columns.
-        if (alignmentColumnPhase == 1)
+        else if (levelTextLevel != Main.getLevel())
         {
-            playerX = Math.max(playerX, leftAlignmentColumnX);
-            playerX = Math.min(playerX, rightAlignmentColumnX - playerSize);
+            levelTextLevel = Main.getLevel();
+            levelText = "Level: " + levelTextLevel;
         }
-        
-        // Adjusting player coordinates based on screen edge.
-        if (playerX <= 0)
+        if (Main.getLevel() >= GameObjects.FINAL_LEVEL && !gameWon)
         {
-            playerX = 0;
+            gameWon = true;
+            endTime = System.currentTimeMillis();
+            winTimeText = "Your time: " + String.valueOf((endTime - startTime) / 1000) + "s.";
         }
-        if (playerY <= 0)
+        LatencyHistogram.TICK.record(System.nanoTime() - tickStart);
+    }
+    
+    // Tells the RouteSolver what changed in the last tick (see the route hint fields).
+    private void updateRoute(int result)
+    {
+        GameObjects level = simulation.getGameObjects();
+        int teleportPhase = simulation.getTeleportPhase();
+        int alignmentColumnPhase = simulation.getAlignmentColumnPhase();
+        if (level != routeLevel || level.getVersion() != routeLevelVersion)
         {
-            playerY = 0;
+            routeSolver.solve(level, Main.getUpgrades());
+            routeLevel = level;
+            routeLevelVersion = level.getVersion();
+            routeReplanned = false;
         }
-        // It appears that the game's dimensions start at 0 initially, so there's a check for that.
-        if (getWidth() != 0 && playerX >= getWidth() - playerSize)
+        else if (result == GameSimulation.TICK_DIED && routeReplanned)
         {
-            playerX = getWidth() - playerSize;
+            routeSolver.restart(level, Main.getUpgrades());
+            routeReplanned = false;
         }
-        if (getHeight() != 0 && playerY >= getHeight() - playerSize)
+        else if ((teleportPhase == 1 && lastTeleportPhase != 1) || (alignmentColumnPhase == 1 && lastAlignmentColumnPhase != 1))
         {
-            playerY = getHeight() - playerSize;
-            // Note: If more platforms are added, this onPlatform stuff needs to be moved.
-            onPlatform = true;
-            currentMidairJumps = 0;
-            currentMidairDashes = 0;
-            pogoing = false;
-            pogoHit = false;
+            simulation.saveState(routeState, 0);
+            routeSolver.replan(level, Main.getUpgrades(), routeState);
+            routeReplanned = true;
         }
-        else // Simulating gravity.
+        lastTeleportPhase = teleportPhase;
+        lastAlignmentColumnPhase = alignmentColumnPhase;
+    }
+    
+    // Puts the player's position into the render interpolation double buffer. With snap, the previous position is set to it as well,
+    // so the player is drawn right there instead of sliding over from where they were (after a teleport, a death, a new level, etc.).
+    private void recordRenderPosition(boolean snap)
+    {
+        int previousSlot = currentRenderSlot;
+        currentRenderSlot = 1 - currentRenderSlot;
+        renderXs[currentRenderSlot] = simulation.getPlayerX();
+        renderYs[currentRenderSlot] = simulation.getPlayerY();
+        if (snap || Math.abs(renderXs[currentRenderSlot] - renderXs[previousSlot]) > MAX_INTERPOLATED_MOVE
+            || Math.abs(renderYs[currentRenderSlot] - renderYs[previousSlot]) > MAX_INTERPOLATED_MOVE)
         {
-            if (playerYV < 0) // Upwards velocity.
-            {
-                playerYV += 0.3;
-            }
-            else if (playerYV > 3 * gravityYVmultiplier) // High downwards velocity.
-            {
-                // If slow fall is off, accelerate at a slower rate. If slow fall is on, there's a hard limit to downward acceleration.
-                if (gravityYVmultiplier == 1)
-                {
-                    playerYV += Math.max(0, 0.15 * gravityYVmultiplier);
-                }
-                else
-                {
-                    playerYV = 3 * gravityYVmultiplier;
-                }
-            }
-            else // Low downwards velocity.
+            renderXs[previousSlot] = renderXs[currentRenderSlot];
+            renderYs[previousSlot] = renderYs[currentRenderSlot];
+        }
+    }
+    
+    // Teleporting to the waypoint can be a short move, so the teleport effect is what gives it away.
+    private boolean spawnedTeleport()
+    {
+        int[] tempData = simulation.getSpawnedEffects();
+        for (int i = 0; i < simulation.getSpawnedEffectCount(); i++)
+        {
+            if (tempData[GameSimulation.EFFECT_DATA_SIZE * i] == ParticleSystem.TELEPORT)
             {
-                playerYV += Math.max(0, 0.3 * gravityYVmultiplier);
+                return true;
             }
-            onPlatform = false;
         }
-        
-        playerRect.setLocation(playerX, playerY);
+        return false;
+    }
+    
+    // Where the player is drawn in a frame that's alpha of the way from the last tick to the next one.
+    private static int interpolate(int[] positions, int currentSlot, double alpha)
+    {
+        int previous = positions[1 - currentSlot];
+        return previous + (int)Math.round((positions[currentSlot] - previous) * alpha);
+    }
+    
+    private void updateStatsLines()
+    {
+        LatencyHistogram[] histograms = LatencyHistogram.getAll();
+        statsLines = new String[histograms.length + 1];
+        statsLines[0] = "ms         p50    p99  p99.9    max";
+        for (int i = 0; i < histograms.length; i++)
+        {
+            LatencyHistogram histogram = histograms[i];
+            statsLines[i + 1] = String.format("%-10s%6.2f %6.2f %6.2f %6.2f", histogram.getName(), histogram.getPercentile(0.5) / 1e6,
+                histogram.getPercentile(0.99) / 1e6, histogram.getPercentile(0.999) / 1e6, histogram.getMax() / 1e6);
+        }
     }
     
     public void paintComponent(Graphics g){
         super.paintComponent(g);
-
+        render(g);
+    }
+    
+    // Draws the current phase of the game. This is also used by GameLoop to draw into its back buffer.
+    // Nothing here changes the game (only the static layer image gets redrawn if it's out of date).
+    public void render(Graphics g)
+    {
+        render(g, 1);
+    }
+    
+    // Same, but with the player drawn alpha of the way from their position after the second to last tick (0) to the last tick (1).
+    public synchronized void render(Graphics g, double alpha)
+    {
+        long paintStart = System.nanoTime();
         if (Main.getGamePhase() == 0)
         {
             g.setColor(Color.WHITE);
@@ -470,145 +557,187 @@ public class PlayerPanel extends JPanel implements ActionListener
         {
             // Sidenote: This section of code seems to stop upon reaching the upgrade phase but restarts as needed.
             
+            // In the scrolling world, everything up to the level counter is drawn shifted so that the player stays in the middle.
+            Rectangle playerRect = simulation.getPlayerRect();
+            int playerX = interpolate(renderXs, currentRenderSlot, alpha);
+            int playerY = interpolate(renderYs, currentRenderSlot, alpha);
+            int cameraX = 0;
+            if (world != null)
+            {
+                cameraX = getCameraX(playerX);
+                g.translate(-cameraX, 0);
+            }
+            
             // Draw alignment columns if they have been placed, part 1.
-            if (alignmentColumnPhase == 1)
+            int leftAlignmentColumnX = simulation.getLeftAlignmentColumnX();
+            int rightAlignmentColumnX = simulation.getRightAlignmentColumnX();
+            if (simulation.getAlignmentColumnPhase() == 1)
             {
-                g.setColor(new Color(128, 150, 128));
+                g.setColor(ALIGNMENT_AREA_COLOR);
                 g.fillRect(leftAlignmentColumnX, 0, (rightAlignmentColumnX - leftAlignmentColumnX), gameHeight);
             }
             
             // Draw portable waypoint if it has been placed.
-            if (teleportPhase == 1)
+            if (simulation.getTeleportPhase() == 1)
             {
-                g.setColor(new Color(128, 0, 128));
+                Rectangle waypoint = simulation.getWaypoint();
+                g.setColor(WAYPOINT_COLOR);
                 g.fillRect(waypoint.x, waypoint.y, waypoint.width, waypoint.height);
             }
             
-            // Draw special effects.
-            for (int i = 0; i < specialEffects.size(); i++)
+            // Draw the route hint if the solver has found a route for this level.
+            if (showRoute)
             {
-                int tempID = specialEffects.get(i).getID();
-                if (tempID == 0)
-                {
-                    int[] tempData = specialEffects.get(i).updateJumpEffect();
-                    g.setColor(specialEffects.get(i).getColor());
-                    g.fillOval(tempData[0], tempData[1], tempData[2], tempData[3]);
-                    if (tempData[4] == 1)
-                    {
-                        specialEffects.remove(i);
-                        i--;
-                    }
-                }
-                else if (tempID == 1)
+                RouteSolver.Route route = routeSolver.getRoute();
+                if (route != null && route.isFor(simulation.getGameObjects()))
                 {
-                    int[] tempData = specialEffects.get(i).updateDashEffect();
-                    g.setColor(specialEffects.get(i).getColor());
-                    g.fillRect(tempData[0], tempData[1], tempData[2], tempData[3]);
-                    if (tempData[4] == 1)
-                    {
-                        specialEffects.remove(i);
-                        i--;
-                    }
-                }
-                else if (tempID == 2)
-                {
-                    int[] tempData = specialEffects.get(i).updateTeleportEffect();
-                    g.setColor(specialEffects.get(i).getColor());
-                    g.fillOval(tempData[0], tempData[1], tempData[2], tempData[3]);
-                    if (tempData[4] == 1)
-                    {
-                        specialEffects.remove(i);
-                        i--;
-                    }
+                    g.setColor(ROUTE_COLOR);
+                    g.drawPolyline(route.getXs(), route.getYs(), route.getPointCount());
                 }
             }
             
+            // Draw special effects.
+            particles.draw(g);
+            
             // Draw player.
             g.setColor(Color.BLUE);
-            g.fillRect(playerRect.x, playerRect.y, playerRect.width, playerRect.height);
+            g.fillRect(playerX, playerY, playerRect.width, playerRect.height);
             
-            // Draw obstacles.
-            g.setColor(Color.RED);
-            for (Rectangle tempRect : gameObjects.getObstacles())
+            // Draw obstacles and goal.
+            if (world != null)
+            {
+                drawWorldChunks(g, cameraX);
+            }
+            else
             {
-                g.fillRect(tempRect.x, tempRect.y, tempRect.width, tempRect.height);
+                g.drawImage(getStaticLayer(), 0, 0, null);
             }
-            // Draw goal.
-            g.setColor(Color.GREEN);
-            g.fillRect(gameObjects.getGoal().x, gameObjects.getGoal().y, gameObjects.getGoal().width, gameObjects.getGoal().height);
             
-            // Draw pogo jump plus some details.
-            pogoHitbox.setLocation(playerRect.x + (playerSize - 6) / 2 , playerRect.y + 16);
-            if (pogoing)
+            // Draw pogo jump. The hits themselves are checked in GameSimulation.
+            if (simulation.isPogoing())
             {
+                Rectangle pogoHitbox = simulation.getPogoHitbox();
                 g.setColor(Color.ORANGE);
-                g.fillRect(pogoHitbox.x, pogoHitbox.y, pogoHitbox.width, pogoHitbox.height);
-                for (Rectangle tempRect : gameObjects.getObstacles())
-                {
-                    if (pogoHitbox.intersects(tempRect))
-                    {
-                        playerYV = -3.9;
-                        pogoHit = true;
-                        break;
-                    }
-                }
+                g.fillRect(pogoHitbox.x - playerRect.x + playerX, pogoHitbox.y - playerRect.y + playerY, pogoHitbox.width, pogoHitbox.height);
             }
             
             // Draw alignment columns if they have been placed, part 2.
-            if (alignmentColumnPhase == 1)
+            if (simulation.getAlignmentColumnPhase() == 1)
             {
-                g.setColor(new Color(255, 255, 0));
+                g.setColor(ALIGNMENT_LINE_COLOR);
                 g.drawLine(leftAlignmentColumnX, 0, leftAlignmentColumnX, gameHeight);
                 g.drawLine(leftAlignmentColumnX + 8, 0, leftAlignmentColumnX + 8, gameHeight);
                 g.drawLine(leftAlignmentColumnX + 16, 0, leftAlignmentColumnX + 16, gameHeight);
                 g.drawLine(rightAlignmentColumnX - 8, 0, rightAlignmentColumnX - 8, gameHeight);
                 g.drawLine(rightAlignmentColumnX, 0, rightAlignmentColumnX, gameHeight);
             }
+            g.translate(cameraX, 0);
             
-            if (!resettingLevel) // This if statement helps prevent a bug where resetting the level could make the player touch the goal.
+            // Level counter display.
+            g.setColor(Color.WHITE);
+            g.setFont(levelFont);
+            g.drawString(levelText, 0, 32);
+            if (showRoute)
             {
-                // Check if goal reached.
-                if (playerRect.intersects(gameObjects.getGoal()))
-                {
-                    Main.nextLevel();
-                }
-                
-                // If the player is invincible (from dashing).
-                if (!(Main.getUpgrades()[5] == 3 && dashingData[2] > 0))
+                int parTicks = routeSolver.getParTicks();
+                if (parTicks != parTextTicks)
                 {
-                    // Check if the player hit an obstacle (after checking the goal, meaning that goal has priority).
-                    for (Rectangle tempRect : gameObjects.getObstacles())
-                    {
-                        if (playerRect.intersects(tempRect))
-                        {
-                            resetPlayer();
-                        }
-                    }
+                    parTextTicks = parTicks;
+                    parText = parTicks < 0 ? "Par: ..." : String.format("Par: %.2fs", parTicks / 60.0);
                 }
+                g.setFont(instructionFont);
+                g.drawString(parText, 0, 52);
             }
             
-            // Level counter display.
-            g.setColor(Color.WHITE);
-            g.setFont(new Font(Font.DIALOG, Font.PLAIN, 32));
-            g.drawString("Level: " + Main.getLevel(), 0, 32);
-            
             // Win message.
-            if (Main.getLevel() >= 30)
+            if (gameWon)
             {
-                if (!gameWon)
-                {
-                    gameWon = true;
-                    endTime = System.currentTimeMillis();
-                }
                 g.setFont(titleFont);
                 drawCenteredString(g, "You win!", getWidth()/2, getHeight()/2 - 30, titleFont);
-                drawCenteredString(g, "Your time: " + String.valueOf((endTime - startTime) / 1000) + "s.", getWidth()/2, getHeight()/2 + 30, titleFont);
+                drawCenteredString(g, winTimeText, getWidth()/2, getHeight()/2 + 30, titleFont);
             }
         }
         else if (Main.getGamePhase() == 2)
         {
             // Reminder: Game phase 2 is when the player gets to upgrade.
         }
+        
+        // Latency overlay.
+        if (showStats)
+        {
+            g.setColor(Color.WHITE);
+            g.setFont(statsFont);
+            for (int i = 0; i < statsLines.length; i++)
+            {
+                g.drawString(statsLines[i], 4, getHeight() - 6 - 13 * (statsLines.length - 1 - i));
+            }
+        }
+        LatencyHistogram.PAINT.record(System.nanoTime() - paintStart);
+    }
+    
+    // In the scrolling world, how far right the view is when the player is at playerX (the player stays in the middle). 0 otherwise.
+    private int getCameraX(int playerX)
+    {
+        return world != null ? Math.max(0, playerX + simulation.getPlayerSize() / 2 - getWidth() / 2) : 0;
+    }
+    
+    // Returns the image with the obstacles and goal of the current level, drawing it again first if it's out of date.
+    public BufferedImage getStaticLayer()
+    {
+        GameObjects gameObjects = simulation.getGameObjects();
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (staticLayer != null && staticLayerLevel == gameObjects && staticLayerVersion == gameObjects.getVersion()
+            && staticLayer.getWidth() == width && staticLayer.getHeight() == height)
+        {
+            return staticLayer;
+        }
+        
+        if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height)
+        {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            if (configuration != null)
+            {
+                staticLayer = configuration.createCompatibleImage(width, height, Transparency.BITMASK);
+            }
+            else
+            {
+                staticLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+        }
+        Graphics2D g = staticLayer.createGraphics();
+        g.setComposite(AlphaComposite.Clear); // Start from a fully transparent image.
+        g.fillRect(0, 0, width, height);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setColor(Color.RED);
+        for (Rectangle tempRect : gameObjects.getObstacles())
+        {
+            g.fillRect(tempRect.x, tempRect.y, tempRect.width, tempRect.height);
+        }
+        g.setColor(Color.GREEN);
+        g.fillRect(gameObjects.getGoal().x, gameObjects.getGoal().y, gameObjects.getGoal().width, gameObjects.getGoal().height);
+        g.dispose();
+        staticLayerLevel = gameObjects;
+        staticLayerVersion = gameObjects.getVersion();
+        return staticLayer;
+    }
+    
+    // Draws the obstacles of the chunks that are on screen (in world coordinates, so g has to be shifted by the camera already).
+    // The chunks change as the player moves, so they're drawn directly instead of through a static layer image.
+    private void drawWorldChunks(Graphics g, int cameraX)
+    {
+        g.setColor(Color.RED);
+        int lastChunk = (cameraX + getWidth()) / ChunkedWorld.CHUNK_SIZE;
+        for (int i = cameraX / ChunkedWorld.CHUNK_SIZE; i <= lastChunk; i++)
+        {
+            int chunkX = i * ChunkedWorld.CHUNK_SIZE;
+            ArrayList<Rectangle> obstacles = world.getChunk(i).getObstacles();
+            for (int j = 0; j < obstacles.size(); j++)
+            {
+                Rectangle tempRect = obstacles.get(j);
+                g.fillRect(chunkX + tempRect.x, tempRect.y, tempRect.width, tempRect.height);
+            }
+        }
     }
     
     // Method that does the default drawString but centered at (x, y).
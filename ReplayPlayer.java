@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: ReplayPlayer.java
+ * The ReplayPlayer plays back a file written by ReplayRecorder by feeding the recorded inputs into a headless GameSimulation.
+ * Playback can go at any speed: 1 is real time (one tick every GameSimulation.TICK_NANOS, like the game), 100 is 100 times as fast, and 0 is as fast as possible.
+ * It keeps track of where the player died and how long each level took, which is printed at the end when run from the command line:
+ *     java ReplayPlayer replays/replay-20250101-120000.pwpr [speed]
+ * See ReplayRecorder for the file format.
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+public class ReplayPlayer
+{
+    private ByteBuffer data;
+    private GameSimulation simulation;
+    private double speed;
+    private long startTime;
+
+    private long ticksPlayed = 0;
+    private long levelStartTick = 0;
+    private int levelDeaths = 0;
+    private ArrayList<String> levelSummaries = new ArrayList<String>();
+
+    public ReplayPlayer(Path path, double theSpeed) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            data = ByteBuffer.allocate((int)channel.size());
+            while (data.hasRemaining() && channel.read(data) >= 0)
+            {
+            }
+            data.flip();
+        }
+        speed = theSpeed;
+
+        if (data.remaining() < 6 || data.getInt() != ReplayRecorder.MAGIC)
+        {
+            throw new IOException(path + " isn't a replay.");
+        }
+        int version = data.get();
+        if (version != ReplayRecorder.VERSION)
+        {
+            throw new IOException(path + " is a version " + version + " replay, but only version " + ReplayRecorder.VERSION + " can be played.");
+        }
+        int[] upgrades = new int[data.get()];
+        for (int i = 0; i < upgrades.length; i++)
+        {
+            upgrades[i] = data.get();
+        }
+        simulation = new GameSimulation(0, 0, upgrades, 0);
+    }
+
+    // Plays the whole replay. Returns false if the file ended early (e.g. the game crashed while recording).
+    public boolean play() throws IOException
+    {
+        startTime = System.nanoTime();
+        while (data.hasRemaining())
+        {
+            int tag = data.get() & 0xFF;
+            if (tag == ReplayRecorder.TAG_TICKS)
+            {
+                int keys = data.getShort() & 0xFFFF;
+                long count = readVarint();
+                for (long i = 0; i < count; i++)
+                {
+                    playTick(keys);
+                }
+            }
+            else if (tag == ReplayRecorder.TAG_LEVEL)
+            {
+                int level = data.get();
+                long levelSeed = data.getLong();
+                if (level != simulation.getLevel())
+                {
+                    finishLevel("cleared");
+                }
+                simulation.resetLevel(level, levelSeed);
+            }
+            else if (tag == ReplayRecorder.TAG_UPGRADE)
+            {
+                simulation.getUpgrades()[data.get()]++;
+            }
+            else if (tag == ReplayRecorder.TAG_FIELD_SIZE)
+            {
+                int width = data.getShort();
+                int height = data.getShort();
+                simulation.setFieldSize(width, height);
+            }
+            else if (tag == ReplayRecorder.TAG_END)
+            {
+                finishLevel("stopped");
+                return true;
+            }
+            else
+            {
+                throw new IOException("Unknown replay event " + tag + ".");
+            }
+        }
+        finishLevel("stopped");
+        return false;
+    }
+
+    private void playTick(int keys)
+    {
+        // Wait until this tick is due. A speed of 0 never waits.
+        if (speed > 0)
+        {
+            long dueTime = startTime + (long)(ticksPlayed * GameSimulation.TICK_NANOS / speed);
+            long waitTime = dueTime - System.nanoTime();
+            if (waitTime > 0)
+            {
+                LockSupport.parkNanos(waitTime);
+            }
+        }
+
+        int result = simulation.tick(keys);
+        ticksPlayed++;
+        if (result == GameSimulation.TICK_DIED)
+        {
+            levelDeaths++;
+        }
+    }
+
+    private void finishLevel(String outcome)
+    {
+        long ticks = ticksPlayed - levelStartTick;
+        levelSummaries.add("Level " + simulation.getLevel() + ": " + outcome + " after " + ticks + " ticks ("
+            + String.format("%.1f", ticks * GameSimulation.TICK_NANOS / 1e9) + "s) and " + levelDeaths + " deaths.");
+        levelStartTick = ticksPlayed;
+        levelDeaths = 0;
+    }
+
+    private long readVarint()
+    {
+        long value = 0;
+        int shift = 0;
+        byte tempByte;
+        do
+        {
+            tempByte = data.get();
+            value |= (long)(tempByte & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((tempByte & 0x80) != 0);
+        return value;
+    }
+
+    public GameSimulation getSimulation()
+    {
+        return simulation;
+    }
+
+    public long getTicksPlayed()
+    {
+        return ticksPlayed;
+    }
+
+    public ArrayList<String> getLevelSummaries()
+    {
+        return levelSummaries;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: java ReplayPlayer <replay file> [speed (1 = real time, 0 = as fast as possible)]");
+            return;
+        }
+        double speed = 0;
+        if (args.length > 1)
+        {
+            speed = Double.parseDouble(args[1]);
+        }
+
+        ReplayPlayer player = new ReplayPlayer(Paths.get(args[0]), speed);
+        long startTime = System.nanoTime();
+        boolean complete = player.play();
+        long elapsedTime = System.nanoTime() - startTime;
+
+        for (String summary : player.getLevelSummaries())
+        {
+            System.out.println(summary);
+        }
+        if (!complete)
+        {
+            System.out.println("The replay ended early.");
+        }
+        System.out.println("Played " + player.getTicksPlayed() + " ticks in " + String.format("%.3f", elapsedTime / 1e9) + "s.");
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: ReplayRecorder.java
+ * The ReplayRecorder writes everything needed to play a run again into a small binary file.
+ * That's the held keys of every tick (as GameSimulation input bits), the seed of every level that gets loaded, and every upgrade picked.
+ * Since GameSimulation is deterministic, ReplayPlayer can then simulate the exact same run again, as fast or as slow as wanted.
+ * Players usually hold the same keys for many ticks in a row, so ticks are stored run-length encoded (keys + how many ticks).
+ * Everything goes through one ByteBuffer that is only written to the FileChannel when it fills up (or when the recording ends).
+ *
+ * File format (all numbers big-endian):
+ * Header: the int MAGIC, a version byte, a byte for how many upgrades there are, and then one byte per upgrade (the starting upgrades).
+ * Then any number of events, each starting with a tag byte:
+ * TAG_TICKS: short keys, varint tick count.   TAG_LEVEL: byte level, long level seed.
+ * TAG_UPGRADE: byte upgrade index.            TAG_FIELD_SIZE: short width, short height.
+ * TAG_END: the end of the recording.
+ * Varints use 7 bits per byte, lowest bits first, with the top bit set on every byte but the last.
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.text.*;
+import java.util.*;
+
+public class ReplayRecorder
+{
+    public static final int MAGIC = 0x50575052; // "PWPR" (Platformer Without Platforms Replay).
+    public static final int VERSION = 3; // Version 1 replays were recorded before dashes needed space to be pressed again, version 2 before swept collision.
+    public static final int TAG_TICKS = 0;
+    public static final int TAG_LEVEL = 1;
+    public static final int TAG_UPGRADE = 2;
+    public static final int TAG_FIELD_SIZE = 3;
+    public static final int TAG_END = 255;
+
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+    private Path path;
+
+    // The run of identical ticks that hasn't been written yet.
+    private int runKeys = 0;
+    private long runLength = 0;
+
+    public ReplayRecorder()
+    {
+    }
+
+    // Starts recording to a new file in the replays folder named after the current time. Returns the file, or null if it couldn't be created.
+    // The game still works if recording fails, it just won't be recorded.
+    public synchronized Path start(int[] upgrades)
+    {
+        String name = "replay-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".pwpr";
+        return start(Paths.get("replays", name), upgrades);
+    }
+
+    public synchronized Path start(Path thePath, int[] upgrades)
+    {
+        stop();
+        try
+        {
+            if (thePath.getParent() != null)
+            {
+                Files.createDirectories(thePath.getParent());
+            }
+            channel = FileChannel.open(thePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            path = thePath;
+            buffer.clear();
+            runLength = 0;
+            buffer.putInt(MAGIC);
+            buffer.put((byte)VERSION);
+            buffer.put((byte)upgrades.length);
+            for (int i = 0; i < upgrades.length; i++)
+            {
+                buffer.put((byte)upgrades[i]);
+            }
+            return path;
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not record a replay to " + thePath + ": " + e);
+            channel = null;
+            return null;
+        }
+    }
+
+    public synchronized boolean isRecording()
+    {
+        return channel != null;
+    }
+
+    public synchronized void recordTick(int keys)
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        if (runLength > 0 && keys != runKeys)
+        {
+            writeRun();
+        }
+        runKeys = keys;
+        runLength++;
+    }
+
+    public synchronized void recordLevel(int level, long levelSeed)
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        writeRun();
+        ensureSpace(10);
+        buffer.put((byte)TAG_LEVEL);
+        buffer.put((byte)level);
+        buffer.putLong(levelSeed);
+    }
+
+    public synchronized void recordUpgrade(int upgradeIndex)
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        writeRun();
+        ensureSpace(2);
+        buffer.put((byte)TAG_UPGRADE);
+        buffer.put((byte)upgradeIndex);
+    }
+
+    public synchronized void recordFieldSize(int width, int height)
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        writeRun();
+        ensureSpace(5);
+        buffer.put((byte)TAG_FIELD_SIZE);
+        buffer.putShort((short)width);
+        buffer.putShort((short)height);
+    }
+
+    // Ends the recording and closes the file. Calling this when nothing is being recorded does nothing.
+    public synchronized void stop()
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        writeRun();
+        ensureSpace(1);
+        buffer.put((byte)TAG_END);
+        flush();
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not finish the replay " + path + ": " + e);
+        }
+        channel = null;
+    }
+
+    private void writeRun()
+    {
+        if (runLength == 0)
+        {
+            return;
+        }
+        ensureSpace(13); // A tag, a short, and a varint of at most 10 bytes.
+        buffer.put((byte)TAG_TICKS);
+        buffer.putShort((short)runKeys);
+        long tempLength = runLength;
+        while (tempLength >= 0x80)
+        {
+            buffer.put((byte)((tempLength & 0x7F) | 0x80));
+            tempLength >>>= 7;
+        }
+        buffer.put((byte)tempLength);
+        runLength = 0;
+    }
+
+    private void ensureSpace(int bytes)
+    {
+        if (buffer.remaining() < bytes)
+        {
+            flush();
+        }
+    }
+
+    private void flush()
+    {
+        buffer.flip();
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not write to the replay " + path + ": " + e);
+        }
+        buffer.clear();
+    }
+}
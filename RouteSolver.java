@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: RouteSolver.java
+ * The RouteSolver looks for the fastest way through the current level on a background thread, so that PlayerPanel can show it
+ * as a hint (press H) along with the level's par time (how long that route takes).
+ * It uses LevelVerifier's route search, which simulates the player's actual moves with their actual upgrades, and it's an anytime search:
+ * the first search uses a narrow beam, so a first route usually shows up within a few frames (a few hundred milliseconds on the hardest
+ * levels, since the solver only gets one thread). After that, every search uses a beam
+ * four times wider that only looks for routes shorter than the best one so far, and every shorter route replaces the hint right away.
+ * Once the widest beam is done (or a search runs out of its time), the thread sleeps until there's a new level.
+ *
+ * Placing the Portable Waypoint or the Alignment Columns changes what the player can do, so then the route is planned again
+ * from where the player is (replan()). That doesn't start over: the level's distance field is kept by the LevelVerifier, and the rest
+ * of the old route is tried from the new spot first. If it still reaches the goal, it's the first answer right away,
+ * and the search goes on from the beam width that found it.
+ * Dying takes the waypoint and the columns away again, and restart() goes back to the best route from the start of the level,
+ * picking its search up where it left off.
+ * The par time is always for the route from the start of the level, so it doesn't change when replanning.
+ *
+ * The solver works on its own copy of the level (GameObjects.copyFrom()), since the game may generate a new level into its
+ * GameObjects object while a search is running. Routes are handed over as Route objects, which never change after they're made.
+ *
+ * Par times can also be measured without the game (the level numbers are printed as CSV):
+ *     java RouteSolver [levels per level number] [seed] [ms per level] [upgrades, e.g. 4,2,2,2,1,3,2,1,2]
+*/
+
+import java.awt.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+public class RouteSolver implements Runnable
+{
+    private static final int FIRST_BEAM_WIDTH = 16;
+    private static final int MAX_BEAM_WIDTH = 4096;
+    private static final long SEARCH_BUDGET_NANOS = 2000000000L; // Per beam width.
+    private static final int FIELD_SIZE = GameObjects.CELL_SIZE * GameObjects.GRID_SIZE;
+
+    // A route through a level, from a saved player state. xs and ys are where the middle of the player is after each tick
+    // (index 0 is the start), for drawing it.
+    public static class Route
+    {
+        private final GameObjects level; // The game's GameObjects object, not the solver's copy.
+        private final int levelVersion;
+        private final int[] inputs;
+        private final int[] xs;
+        private final int[] ys;
+        private final int beamWidth; // The beam width that found it.
+
+        private Route(GameObjects theLevel, int theLevelVersion, int[] theInputs, int[] theXs, int[] theYs, int theBeamWidth)
+        {
+            level = theLevel;
+            levelVersion = theLevelVersion;
+            inputs = theInputs;
+            xs = theXs;
+            ys = theYs;
+            beamWidth = theBeamWidth;
+        }
+
+        // Whether this route is for the level that gameObjects has right now.
+        public boolean isFor(GameObjects gameObjects)
+        {
+            return gameObjects == level && gameObjects.getVersion() == levelVersion;
+        }
+
+        public int getTicks()
+        {
+            return inputs.length;
+        }
+
+        // The points to draw (the same arrays every time, so they shouldn't be changed).
+        public int[] getXs()
+        {
+            return xs;
+        }
+
+        public int[] getYs()
+        {
+            return ys;
+        }
+
+        public int getPointCount()
+        {
+            return xs.length;
+        }
+    }
+
+    // What to solve. A new Problem replaces the one being solved.
+    private static class Problem
+    {
+        private final GameObjects level; // The game's GameObjects object.
+        private final int levelVersion;
+        private final GameObjects levelCopy; // What the solver actually searches.
+        private final int[] upgrades;
+        private final long[] startState; // Null for the start of the level.
+        private final Route knownRoute; // A route that's already known to work from the start state, or null.
+        private final Route previousRoute; // When replanning, the route to try the rest of first, or null.
+        private final int firstBeamWidth; // The beam width to start the search at (unless the previous route gives a better one).
+        private int generation; // The verifier's generation for this problem's searches (see setProblem()).
+
+        private Problem(GameObjects theLevel, GameObjects theLevelCopy, int[] theUpgrades, long[] theStartState, Route theKnownRoute,
+            Route thePreviousRoute, int theFirstBeamWidth)
+        {
+            level = theLevel;
+            levelVersion = theLevel.getVersion();
+            levelCopy = theLevelCopy;
+            upgrades = theUpgrades;
+            startState = theStartState;
+            knownRoute = theKnownRoute;
+            previousRoute = thePreviousRoute;
+            firstBeamWidth = theFirstBeamWidth;
+        }
+    }
+
+    private LevelVerifier verifier; // Only used by the background thread (except for cancel()).
+    private volatile Problem problem;
+    private volatile Route route; // The best route so far for the current problem.
+    private volatile int parTicks = -1; // The length of the best route from the start of the current level, or -1 if there's none yet.
+    // The best route from the start of the current level, and the beam width its search got up to (for restart()).
+    // These, route, parTicks, and problem are only changed while holding this object's lock, so that a search that was just replaced
+    // can't publish its route after the new problem was set.
+    private Route startRoute;
+    private int startBeamWidth;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // With a ForkJoinPool, each search uses all of its threads. Without one (null), it only uses the solver's own thread.
+    public RouteSolver(ForkJoinPool pool)
+    {
+        verifier = new LevelVerifier(pool, SEARCH_BUDGET_NANOS / 1000000);
+    }
+
+    public void start()
+    {
+        running = true;
+        thread = new Thread(this, "Route solver");
+        thread.setDaemon(true); // Don't keep the game running after the window is closed.
+        thread.setPriority(Thread.MIN_PRIORITY); // The game (and level pre-generation) come first.
+        thread.start();
+    }
+
+    public void stop()
+    {
+        running = false;
+        verifier.cancel();
+        LockSupport.unpark(thread);
+    }
+
+    // Starts looking for the fastest route from the start of the current level of gameObjects with the given upgrades.
+    // Has to be called on the thread that changes gameObjects, since it's copied here.
+    public synchronized void solve(GameObjects gameObjects, int[] upgrades)
+    {
+        startRoute = null;
+        startBeamWidth = FIRST_BEAM_WIDTH;
+        Rectangle goal = gameObjects.getGoal();
+        if (goal.width == 0 || goal.x + goal.width > FIELD_SIZE || goal.y + goal.height > FIELD_SIZE)
+        {
+            setProblem(null, null); // The final level's goal can't be reached on purpose.
+            return;
+        }
+        GameObjects levelCopy = new GameObjects(0, false); // The level is copied in right away, so it doesn't generate one of its own.
+        levelCopy.setTimed(false);
+        levelCopy.copyFrom(gameObjects);
+        setProblem(new Problem(gameObjects, levelCopy, upgrades.clone(), null, null, null, FIRST_BEAM_WIDTH), null);
+    }
+
+    // Plans again from the given saved player state (see GameSimulation.saveState()) on the same level, keeping what can be kept.
+    public synchronized void replan(GameObjects gameObjects, int[] upgrades, long[] state)
+    {
+        Problem current = problem;
+        if (!isFor(current, gameObjects))
+        {
+            solve(gameObjects, upgrades);
+            return;
+        }
+        setProblem(new Problem(gameObjects, current.levelCopy, upgrades.clone(), state.clone(), null, route, FIRST_BEAM_WIDTH), null);
+    }
+
+    // Goes back to the route from the start of the level (e.g. after the player died, which puts them back there).
+    public synchronized void restart(GameObjects gameObjects, int[] upgrades)
+    {
+        Problem current = problem;
+        if (!isFor(current, gameObjects))
+        {
+            solve(gameObjects, upgrades);
+            return;
+        }
+        if (current.startState == null)
+        {
+            return; // Already there.
+        }
+        setProblem(new Problem(gameObjects, current.levelCopy, upgrades.clone(), null, startRoute, null, startBeamWidth), startRoute);
+    }
+
+    private static boolean isFor(Problem current, GameObjects gameObjects)
+    {
+        return current != null && current.level == gameObjects && current.levelVersion == gameObjects.getVersion();
+    }
+
+    private void setProblem(Problem newProblem, Route knownRoute)
+    {
+        // This stops the search for the old problem, even one that is just about to start, but not the ones for the new problem.
+        int generation = verifier.cancel();
+        if (newProblem != null)
+        {
+            newProblem.generation = generation;
+        }
+        problem = newProblem;
+        route = knownRoute;
+        parTicks = startRoute != null ? startRoute.getTicks() : -1;
+        LockSupport.unpark(thread);
+    }
+
+    // The best route so far for the current level, or null if none was found yet.
+    public Route getRoute()
+    {
+        return route;
+    }
+
+    // The par time of the current level in ticks (the best route from the start so far), or -1 if there's none yet.
+    public int getParTicks()
+    {
+        return parTicks;
+    }
+
+    public void run()
+    {
+        Problem solved = null;
+        while (running)
+        {
+            Problem current = problem;
+            if (current == null || current == solved)
+            {
+                LockSupport.park(this);
+                continue;
+            }
+            search(current);
+            solved = current;
+        }
+    }
+
+    // The anytime search described at the top. Stops early if the problem is replaced.
+    private void search(Problem current)
+    {
+        Route best = current.knownRoute;
+        int firstBeamWidth = current.firstBeamWidth;
+        if (best == null && current.previousRoute != null)
+        {
+            best = repair(current);
+            if (best != null)
+            {
+                publish(current, best, firstBeamWidth);
+                firstBeamWidth = best.beamWidth;
+            }
+        }
+        for (int beamWidth = firstBeamWidth; beamWidth <= MAX_BEAM_WIDTH && problem == current; beamWidth *= 4)
+        {
+            int maxTicks = best != null ? best.getTicks() - 1 : Integer.MAX_VALUE;
+            long startTime = System.nanoTime();
+            int result = verifier.findRoute(current.levelCopy, current.upgrades.clone(), current.startState, beamWidth, maxTicks,
+                SEARCH_BUDGET_NANOS, current.generation);
+            if (result == LevelVerifier.SOLVABLE)
+            {
+                best = buildRoute(current, verifier.getSolution(), beamWidth);
+            }
+            else if (System.nanoTime() - startTime >= SEARCH_BUDGET_NANOS || problem != current)
+            {
+                // Out of time (a wider beam would only take longer) or replaced. Either way, this beam width isn't done.
+                if (System.nanoTime() - startTime >= SEARCH_BUDGET_NANOS)
+                {
+                    publish(current, best, MAX_BEAM_WIDTH * 4);
+                }
+                return;
+            }
+            publish(current, best, beamWidth * 4);
+        }
+    }
+
+    // Tries the rest of the previous route from the new start state: it picks up from the point of the route closest to the player.
+    // Returns the route if it still reaches the goal, or null.
+    private Route repair(Problem current)
+    {
+        Route previous = current.previousRoute;
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, current.upgrades.clone(), current.levelCopy);
+        simulation.loadState(current.startState, 0);
+        int centerX = simulation.getPlayerX() + simulation.getPlayerSize() / 2;
+        int centerY = simulation.getPlayerY() + simulation.getPlayerSize() / 2;
+        int closest = 0;
+        long closestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < previous.getPointCount(); i++)
+        {
+            long distanceX = previous.xs[i] - centerX;
+            long distanceY = previous.ys[i] - centerY;
+            if (distanceX * distanceX + distanceY * distanceY < closestDistance)
+            {
+                closest = i;
+                closestDistance = distanceX * distanceX + distanceY * distanceY;
+            }
+        }
+        int[] inputs = Arrays.copyOfRange(previous.inputs, closest, previous.inputs.length);
+        for (int i = 0; i < inputs.length; i++)
+        {
+            int result = simulation.tick(inputs[i]);
+            if (result == GameSimulation.TICK_GOAL)
+            {
+                return buildRoute(current, Arrays.copyOf(inputs, i + 1), previous.beamWidth);
+            }
+            if (result != GameSimulation.TICK_CONTINUE)
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // Plays the inputs from the problem's start state to get the points of the route.
+    private Route buildRoute(Problem current, int[] inputs, int beamWidth)
+    {
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, current.upgrades.clone(), current.levelCopy);
+        if (current.startState != null)
+        {
+            simulation.loadState(current.startState, 0);
+        }
+        else
+        {
+            simulation.resetPlayer();
+        }
+        int[] xs = new int[inputs.length + 1];
+        int[] ys = new int[inputs.length + 1];
+        for (int i = 0; i <= inputs.length; i++)
+        {
+            xs[i] = simulation.getPlayerX() + simulation.getPlayerSize() / 2;
+            ys[i] = simulation.getPlayerY() + simulation.getPlayerSize() / 2;
+            if (i < inputs.length)
+            {
+                simulation.tick(inputs[i]);
+            }
+        }
+        return new Route(current.level, current.levelVersion, inputs, xs, ys, beamWidth);
+    }
+
+    // Hands over the best route so far (which may be null) and remembers that the search is up to nextBeamWidth.
+    private synchronized void publish(Problem current, Route newRoute, int nextBeamWidth)
+    {
+        if (problem != current)
+        {
+            return;
+        }
+        route = newRoute;
+        if (current.startState == null)
+        {
+            startRoute = newRoute;
+            startBeamWidth = nextBeamWidth;
+            parTicks = newRoute != null ? newRoute.getTicks() : -1;
+        }
+    }
+
+    // Measures par times: for every level number, generates levels and gives the solver millis on each one,
+    // then prints how long it took to get the first route, and the average par time of the first and of the final routes.
+    public static void main(String[] args)
+    {
+        int levelsPerNumber = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : new SplittableRandom().nextLong();
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+        int[] upgrades = new int[9];
+        if (args.length > 3)
+        {
+            String[] parts = args[3].split(",");
+            for (int i = 0; i < parts.length && i < upgrades.length; i++)
+            {
+                upgrades[i] = Integer.parseInt(parts[i].trim());
+            }
+        }
+
+        RouteSolver solver = new RouteSolver(null);
+        solver.start();
+        GameObjects gameObjects = new GameObjects(seed);
+        gameObjects.setTimed(false);
+        System.out.println("level,solved,first route ms,first par s,final par s");
+        for (int level = 1; level < GameObjects.FINAL_LEVEL; level++)
+        {
+            int solved = 0;
+            double firstMillis = 0;
+            double firstPar = 0;
+            double finalPar = 0;
+            for (int i = 0; i < levelsPerNumber; i++)
+            {
+                gameObjects.generateLevel(level);
+                long startTime = System.nanoTime();
+                solver.solve(gameObjects, upgrades);
+                long firstTime = -1;
+                int firstTicks = -1;
+                while (System.nanoTime() - startTime < millis * 1000000L)
+                {
+                    if (firstTicks < 0 && solver.getParTicks() >= 0)
+                    {
+                        firstTime = System.nanoTime() - startTime;
+                        firstTicks = solver.getParTicks();
+                    }
+                    LockSupport.parkNanos(100000);
+                }
+                if (firstTicks >= 0)
+                {
+                    solved++;
+                    firstMillis += firstTime / 1e6;
+                    firstPar += firstTicks / 60.0;
+                    finalPar += solver.getParTicks() / 60.0;
+                }
+            }
+            System.out.println(String.format("%d,%d,%.1f,%.2f,%.2f", level, solved, firstMillis / Math.max(1, solved),
+                firstPar / Math.max(1, solved), finalPar / Math.max(1, solved)));
+        }
+        solver.stop();
+    }
+}
\ No newline at end of file
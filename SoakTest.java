@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: SoakTest.java
+ * The SoakTest throws random and adversarial inputs at the physics for as many ticks as it's told to (10^8 by default), on every core,
+ * and checks the player's state after every single tick. It's for the rare bugs that normal play (or BotRunner) almost never hits,
+ * like ending up inside an obstacle or off the screen after a teleport:
+ *     java SoakTest [ticks] [threads] [seed] [output folder]
+ * The ticks are split into episodes of EPISODE_TICKS. Every episode has its own seed, which decides its upgrades (picked like a player
+ * could pick them), its level number, its levels, and how it presses keys (see the STRATEGY_ constants). Nothing is shared between
+ * episodes except the totals, so they're spread over a plain thread pool like BotRunner's runs.
+ *
+ * The invariants checked after every tick are:
+ * - the player is inside the screen.
+ * - the velocities are finite and not absurdly fast.
+ * - the midair jump and dash counters, the dash steps, and the waypoint and alignment column phases are within what the upgrades allow.
+ * - the player isn't inside an obstacle (unless they're in an invincible dash), and the player's rectangle is where the player is.
+ * The first time an invariant breaks, the episode's inputs up to that tick are shrunk: chunks of ticks are cut out and keys are let go
+ * for as long as the same invariant still breaks (for at most SHRINK_NANOS). The smallest trace found is printed and saved as a replay
+ * in the output folder ("soak" by default), so ReplayPlayer can play it back. Later breaks of the same invariant are only counted.
+ *
+ * This drives GameSimulation directly instead of PlayerPanel.step(): step() only adds drawing state and talks to Main, which can't be
+ * shared by many threads at once, and the physics is all in GameSimulation.tick(). A checked tick takes a fraction of a microsecond,
+ * so 10^8 ticks take well under a minute even on one core.
+*/
+
+import java.awt.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class SoakTest
+{
+    private static final int FIELD_SIZE = GameObjects.CELL_SIZE * GameObjects.GRID_SIZE;
+    private static final int EPISODE_TICKS = 1 << 14; // About 4.5 minutes of play.
+    private static final long SHRINK_NANOS = 30000000000L; // How long shrinking one failing trace can take at most.
+    private static final int GAMEPLAY_KEYS = GameSimulation.RIGHT | GameSimulation.LEFT | GameSimulation.UP | GameSimulation.DOWN
+        | GameSimulation.Z | GameSimulation.X | GameSimulation.C | GameSimulation.SPACE;
+    private static final int ARROW_KEYS = GameSimulation.RIGHT | GameSimulation.LEFT | GameSimulation.UP | GameSimulation.DOWN;
+    private static final int ACTION_KEYS = GameSimulation.Z | GameSimulation.X | GameSimulation.SPACE;
+    private static final int RESET_ODDS = 4096; // r is pressed on about one tick in this many, since it makes a new level.
+    private static final double MAX_SPEED = 64; // Pixels per tick. Nothing in the game moves anywhere near this fast.
+
+    // How an episode presses keys.
+    private static final int STRATEGY_RANDOM = 0; // Random gameplay keys every tick.
+    private static final int STRATEGY_HELD = 1; // Random gameplay keys held for up to a second at a time, more like a player.
+    // The arrows point the same way for a couple of seconds at a time (often into a wall or corner), while z, x, and space are mashed
+    // on every other tick. This does as many jumps, dashes, teleports, pogos, waypoints, and columns as possible.
+    private static final int STRATEGY_MASH = 2;
+    private static final int STRATEGY_COUNT = 3;
+
+    // The invariants. A check returns the first one that's broken, or NONE.
+    private static final int NONE = 0;
+    private static final int OUT_OF_BOUNDS = 1;
+    private static final int BAD_VELOCITY = 2;
+    private static final int BAD_COUNTER = 3;
+    private static final int INSIDE_OBSTACLE = 4;
+    private static final int HITBOX_MISMATCH = 5;
+    private static final String[] INVARIANT_NAMES = {"none", "out-of-bounds", "bad-velocity", "bad-counter", "inside-obstacle", "hitbox-mismatch"};
+
+    private Path outputFolder;
+    // Every worker thread keeps the inputs of its current episode here, in case they need to be shrunk.
+    private ThreadLocal<int[]> traces = ThreadLocal.withInitial(() -> new int[EPISODE_TICKS]);
+    private Set<Integer> shrunkInvariants = ConcurrentHashMap.newKeySet();
+
+    // Totals from every episode.
+    private AtomicLong totalTicks = new AtomicLong();
+    private AtomicLongArray failures = new AtomicLongArray(INVARIANT_NAMES.length);
+
+    // Everything that decides how an episode plays out, apart from its inputs.
+    private static class Episode
+    {
+        private long seed;
+        private int[] upgrades = new int[9];
+        private int level;
+        private long simulationSeed;
+        private int strategy;
+
+        private Episode(long theSeed, SplittableRandom random)
+        {
+            seed = theSeed;
+            int picks = random.nextInt(15); // There are 14 upgrade screens in a whole game.
+            for (int i = 0; i < picks; i++)
+            {
+                pickUpgrade(upgrades, random);
+            }
+            level = 1 + random.nextInt(GameObjects.FINAL_LEVEL - 1);
+            simulationSeed = random.nextLong();
+            strategy = random.nextInt(STRATEGY_COUNT);
+        }
+
+        // A new simulation at the start of this episode. Every simulation made this way plays the same levels.
+        private GameSimulation start(ReplayRecorder recorder)
+        {
+            GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, upgrades.clone(), simulationSeed);
+            if (recorder != null)
+            {
+                simulation.setReplayRecorder(recorder);
+                recorder.recordFieldSize(FIELD_SIZE, FIELD_SIZE);
+            }
+            simulation.resetLevel(level);
+            return simulation;
+        }
+    }
+
+    public SoakTest(Path theOutputFolder)
+    {
+        outputFolder = theOutputFolder;
+    }
+
+    // Plays at least the given number of ticks on the given number of threads. Every episode gets its own seed from the given seed.
+    public void runAll(long ticks, int threads, long seed) throws InterruptedException
+    {
+        long episodes = (ticks + EPISODE_TICKS - 1) / EPISODE_TICKS;
+        SplittableRandom seedGenerator = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+        for (long i = 0; i < episodes; i++)
+        {
+            long episodeSeed = seedGenerator.nextLong();
+            results.add(executor.submit(() -> runEpisode(episodeSeed)));
+        }
+        executor.shutdown();
+        for (Future<?> result : results)
+        {
+            try
+            {
+                result.get();
+            }
+            catch (ExecutionException e)
+            {
+                throw new RuntimeException("An episode crashed.", e.getCause());
+            }
+        }
+    }
+
+    // Plays one episode until it runs out of ticks or an invariant breaks.
+    public void runEpisode(long episodeSeed)
+    {
+        SplittableRandom random = new SplittableRandom(episodeSeed);
+        Episode episode = new Episode(episodeSeed, random);
+        GameSimulation simulation = episode.start(null);
+        int[] trace = traces.get();
+        int heldKeys = 0;
+        int holdTicks = 0;
+        int tick = 0;
+        while (tick < EPISODE_TICKS)
+        {
+            int keys;
+            if (episode.strategy == STRATEGY_RANDOM)
+            {
+                keys = random.nextInt() & GAMEPLAY_KEYS;
+            }
+            else if (episode.strategy == STRATEGY_HELD)
+            {
+                if (holdTicks == 0)
+                {
+                    heldKeys = random.nextInt() & GAMEPLAY_KEYS;
+                    holdTicks = 1 + random.nextInt(60);
+                }
+                holdTicks--;
+                keys = heldKeys;
+            }
+            else
+            {
+                if (holdTicks == 0)
+                {
+                    heldKeys = random.nextInt() & (ARROW_KEYS | GameSimulation.C);
+                    holdTicks = 1 + random.nextInt(240);
+                }
+                holdTicks--;
+                keys = heldKeys | ((tick & 1) == 0 ? random.nextInt() & ACTION_KEYS : 0);
+            }
+            if (random.nextInt(RESET_ODDS) == 0)
+            {
+                keys |= GameSimulation.R;
+            }
+
+            trace[tick++] = keys;
+            int invariant = step(simulation, keys);
+            if (invariant != NONE)
+            {
+                failures.getAndIncrement(invariant);
+                if (shrunkInvariants.add(invariant))
+                {
+                    report(episode, Arrays.copyOf(trace, tick), invariant, describe(simulation, invariant));
+                }
+                break;
+            }
+        }
+        totalTicks.getAndAdd(tick);
+    }
+
+    // Ticks the simulation (going on to a new level of the same number when the goal is reached) and returns the broken invariant, if any.
+    private static int step(GameSimulation simulation, int keys)
+    {
+        int result = simulation.tick(keys);
+        if (result == GameSimulation.TICK_GOAL)
+        {
+            simulation.resetLevel(simulation.getLevel());
+        }
+        return check(simulation);
+    }
+
+    private static int check(GameSimulation simulation)
+    {
+        int x = simulation.getPlayerX();
+        int y = simulation.getPlayerY();
+        int size = simulation.getPlayerSize();
+        if (x < 0 || y < 0 || x > FIELD_SIZE - size || y > FIELD_SIZE - size)
+        {
+            return OUT_OF_BOUNDS;
+        }
+        double xv = simulation.getPlayerXV();
+        double yv = simulation.getPlayerYV();
+        // Written so that NaN fails too.
+        if (!(Math.abs(xv) <= MAX_SPEED && Math.abs(yv) <= MAX_SPEED))
+        {
+            return BAD_VELOCITY;
+        }
+        MovementProfile profile = simulation.getMovementProfile();
+        if (simulation.getMidairJumpsUsed() < 0 || simulation.getMidairJumpsUsed() > profile.getMidairJumps()
+            || simulation.getMidairDashesUsed() < 0 || simulation.getMidairDashesUsed() > profile.getDashes()
+            || simulation.getDashStepsLeft() < 0 || simulation.getDashStepsLeft() > 12
+            || simulation.getTeleportPhase() < 0 || simulation.getTeleportPhase() > (profile.hasWaypoint() ? 2 : 0)
+            || simulation.getAlignmentColumnPhase() < 0 || simulation.getAlignmentColumnPhase() > (profile.hasAlignmentColumns() ? 2 : 0))
+        {
+            return BAD_COUNTER;
+        }
+        // Touching an obstacle kills the player in the same tick, so nobody should ever be left inside one.
+        // After reaching the goal, the player is back at the start of a new level, so that's covered as well.
+        boolean invincible = profile.hasInvincibleDash() && simulation.getDashStepsLeft() > 0;
+        if (!invincible && simulation.getGameObjects().intersectsObstacle(x, y, size, size))
+        {
+            return INSIDE_OBSTACLE;
+        }
+        Rectangle playerRect = simulation.getPlayerRect();
+        if (playerRect.x != x || playerRect.y != y)
+        {
+            return HITBOX_MISMATCH;
+        }
+        return NONE;
+    }
+
+    private static String describe(GameSimulation simulation, int invariant)
+    {
+        return INVARIANT_NAMES[invariant] + " at (" + simulation.getPlayerX() + ", " + simulation.getPlayerY() + ") with velocity ("
+            + simulation.getPlayerXV() + ", " + simulation.getPlayerYV() + "), midair jumps " + simulation.getMidairJumpsUsed()
+            + ", midair dashes " + simulation.getMidairDashesUsed() + ", dash steps " + simulation.getDashStepsLeft()
+            + ", teleport phase " + simulation.getTeleportPhase() + ", column phase " + simulation.getAlignmentColumnPhase()
+            + " on level " + simulation.getLevel();
+    }
+
+    // Plays the trace from the start of the episode. Returns the index of the tick that broke the given invariant, or -1 if it never did.
+    private static int firstFailure(Episode episode, int[] trace, int invariant)
+    {
+        GameSimulation simulation = episode.start(null);
+        for (int i = 0; i < trace.length; i++)
+        {
+            if (step(simulation, trace[i]) == invariant)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Makes the failing trace as short and simple as it can in SHRINK_NANOS, keeping the same invariant broken.
+    // Every accepted change also cuts the trace off right after its new first failure.
+    private static int[] shrink(Episode episode, int[] trace, int invariant)
+    {
+        long deadline = System.nanoTime() + SHRINK_NANOS;
+        boolean changed = true;
+        while (changed && System.nanoTime() < deadline)
+        {
+            changed = false;
+            // Cutting out chunks of ticks, from half of the trace down to single ticks.
+            for (int chunk = trace.length / 2; chunk >= 1 && System.nanoTime() < deadline; chunk /= 2)
+            {
+                int start = 0;
+                while (start + chunk <= trace.length && System.nanoTime() < deadline)
+                {
+                    int[] candidate = new int[trace.length - chunk];
+                    System.arraycopy(trace, 0, candidate, 0, start);
+                    System.arraycopy(trace, start + chunk, candidate, start, candidate.length - start);
+                    int failure = firstFailure(episode, candidate, invariant);
+                    if (failure >= 0)
+                    {
+                        trace = Arrays.copyOf(candidate, failure + 1);
+                        changed = true;
+                    }
+                    else
+                    {
+                        start += chunk;
+                    }
+                }
+            }
+            // Letting go of keys, one key on one tick at a time.
+            for (int i = 0; i < trace.length && System.nanoTime() < deadline; i++)
+            {
+                int keys = trace[i];
+                while (keys != 0)
+                {
+                    int key = Integer.lowestOneBit(keys);
+                    keys &= ~key;
+                    int[] candidate = trace.clone();
+                    candidate[i] &= ~key;
+                    int failure = firstFailure(episode, candidate, invariant);
+                    if (failure >= 0)
+                    {
+                        trace = Arrays.copyOf(candidate, failure + 1);
+                        changed = true;
+                        if (i >= trace.length)
+                        {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return trace;
+    }
+
+    // Shrinks the failing trace, saves it as a replay, and prints it.
+    private void report(Episode episode, int[] trace, int invariant, String description)
+    {
+        int[] shrunk = shrink(episode, trace, invariant);
+        Path path = outputFolder.resolve("soak-" + INVARIANT_NAMES[invariant] + "-" + Long.toHexString(episode.seed) + ".pwpr");
+        ReplayRecorder recorder = new ReplayRecorder();
+        Path recorded = recorder.start(path, episode.upgrades);
+        GameSimulation simulation = episode.start(recorder);
+        for (int i = 0; i < shrunk.length; i++)
+        {
+            step(simulation, shrunk[i]);
+        }
+        recorder.stop();
+
+        StringBuilder report = new StringBuilder();
+        report.append("Broken invariant: ").append(description).append('\n');
+        report.append("Episode seed ").append(episode.seed).append(", upgrades ").append(Arrays.toString(episode.upgrades))
+            .append(", level ").append(episode.level).append(", ").append(trace.length).append(" ticks.\n");
+        report.append("Shrunk to ").append(shrunk.length).append(" ticks: ").append(describe(simulation, invariant)).append('\n');
+        // The trace as runs of held keys, like a replay file has it.
+        int runStart = 0;
+        for (int i = 1; i <= shrunk.length; i++)
+        {
+            if (i == shrunk.length || shrunk[i] != shrunk[runStart])
+            {
+                report.append("  ").append(i - runStart).append(" x ").append(getKeyNames(shrunk[runStart])).append('\n');
+                runStart = i;
+            }
+        }
+        if (recorded != null)
+        {
+            report.append("Saved as ").append(recorded).append(" (see ReplayPlayer).\n");
+        }
+        System.out.print(report);
+    }
+
+    private static String getKeyNames(int keys)
+    {
+        String[] names = {"right", "left", "up", "down", "z", "x", "c", "space", "b", "d", "p", "r"};
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < names.length; i++)
+        {
+            if ((keys & (1 << i)) != 0)
+            {
+                result.append(result.length() == 0 ? "" : "+").append(names[i]);
+            }
+        }
+        return result.length() == 0 ? "nothing" : result.toString();
+    }
+
+    // Same as BotRunner: a random upgrade that a player could pick.
+    private static void pickUpgrade(int[] upgrades, SplittableRandom random)
+    {
+        ArrayList<Integer> choices = new ArrayList<Integer>();
+        for (int i = 0; i < upgrades.length; i++)
+        {
+            if (UpgradePanel.canUpgrade(upgrades, i))
+            {
+                choices.add(i);
+            }
+        }
+        if (!choices.isEmpty())
+        {
+            upgrades[choices.get(random.nextInt(choices.size()))]++;
+        }
+    }
+
+    public void printReport(long elapsedNanos)
+    {
+        long ticks = totalTicks.get();
+        System.out.println(String.format("Played %d ticks in %.1f s (%.1f million ticks per second).", ticks, elapsedNanos / 1e9,
+            ticks / (elapsedNanos / 1e3)));
+        long total = 0;
+        for (int invariant = 1; invariant < INVARIANT_NAMES.length; invariant++)
+        {
+            total += failures.get(invariant);
+            if (failures.get(invariant) > 0)
+            {
+                System.out.println(INVARIANT_NAMES[invariant] + ": " + failures.get(invariant) + " episodes");
+            }
+        }
+        if (total == 0)
+        {
+            System.out.println("No invariant was broken.");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : 100000000L;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        Path outputFolder = Paths.get(args.length > 3 ? args[3] : "soak");
+
+        System.out.println("Playing " + ticks + " ticks on " + threads + " threads with seed " + seed + ".");
+        SoakTest soakTest = new SoakTest(outputFolder);
+        long startTime = System.nanoTime();
+        soakTest.runAll(ticks, threads, seed);
+        soakTest.printReport(System.nanoTime() - startTime);
+    }
+}
\ No newline at end of file
@@ -21,7 +21,7 @@ public class UpgradePanel extends JPanel implements ActionListener
     private JPanel centerPanel;
     
     private ArrayList<JButton> upgradeButtons = new ArrayList<JButton>();
-    private String[][] upgradeNames = {{"Double Jump", "Triple Jump", "Quadruple Jump", "Quintuple Jump"},
+    private static String[][] upgradeNames = {{"Double Jump", "Triple Jump", "Quadruple Jump", "Quintuple Jump"},
         {"Run", "Sprint"},
         {"High Jump", "Super High Jump"},
         {"Slow Fall", "Glide"},
@@ -83,6 +83,7 @@ public class UpgradePanel extends JPanel implements ActionListener
     {
         int upgradeIndex = Integer.parseInt(event.getActionCommand());
         Main.getUpgrades()[upgradeIndex]++;
+        Main.getReplayRecorder().recordUpgrade(upgradeIndex);
         
         setUpButtons();
         eastPanel.removeAll();
@@ -143,9 +144,16 @@ public class UpgradePanel extends JPanel implements ActionListener
     }
     
     public boolean buttonCheck(int upgradeIndex)
+    {
+        return canUpgrade(Main.getUpgrades(), upgradeIndex);
+    }
+    
+    // The rules for which upgrades can be picked, given the upgrades so far (same indices as Main.getUpgrades()).
+    // These don't depend on the panel, so headless code (like BotRunner) can pick upgrades the same way a player could.
+    public static boolean canUpgrade(int[] upgrades, int upgradeIndex)
     {
         // This basically checks if all upgrades in a path have been gotten (if so, then don't display this path).
-        if (upgradeNames[upgradeIndex].length <= Main.getUpgrades()[upgradeIndex])
+        if (upgradeNames[upgradeIndex].length <= upgrades[upgradeIndex])
         {
             return false;
         }
@@ -154,7 +162,7 @@ public class UpgradePanel extends JPanel implements ActionListener
         // Can't upgrade the standard path if the special path is upgraded.
         if (upgradeIndex == 4)
         {
-            if (Main.getUpgrades()[5] != 0)
+            if (upgrades[5] != 0)
             {
                 return false;
             }
@@ -162,7 +170,7 @@ public class UpgradePanel extends JPanel implements ActionListener
         // Can't upgrade the special path if the standard path is upgraded beyond the basic dash or not upgraded at all.
         if (upgradeIndex == 5)
         {
-            if (Main.getUpgrades()[4] != 1)
+            if (upgrades[4] != 1)
             {
                 return false;
             }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: BenchmarkFixtures.java
+ * The game's classes are in the default package, and Java doesn't allow classes in a named package to use those directly.
+ * JMH on the other hand refuses benchmark classes in the default package. This class bridges the two:
+ * it lives in the default package next to the game, sets up the work to measure, and hands it over as plain JDK interfaces
+ * (IntSupplier) that the benchmarks in the bench package look up once through reflection during their setup.
+ * Calling the returned IntSupplier is what's actually measured, so the reflection is never part of a measurement.
+*/
+
+import java.awt.*;
+import java.awt.image.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+public class BenchmarkFixtures
+{
+    // Upgrade arrays (same indices as Main.getUpgrades()) for the different ways a run can go.
+    // These all follow the rules in UpgradePanel.buttonCheck().
+    private static final Map<String, int[]> UPGRADE_SETS = new LinkedHashMap<String, int[]>();
+    static
+    {
+        UPGRADE_SETS.put("none", new int[] {0, 0, 0, 0, 0, 0, 0, 0, 0});
+        UPGRADE_SETS.put("midair", new int[] {4, 2, 2, 2, 0, 0, 0, 0, 0});
+        UPGRADE_SETS.put("dashes", new int[] {1, 1, 0, 0, 3, 0, 0, 0, 0});
+        UPGRADE_SETS.put("omnidash", new int[] {1, 1, 1, 1, 1, 1, 1, 0, 0});
+        UPGRADE_SETS.put("teleport", new int[] {1, 1, 1, 1, 1, 2, 1, 1, 0});
+        UPGRADE_SETS.put("invincible", new int[] {2, 1, 1, 1, 1, 3, 2, 0, 1});
+        UPGRADE_SETS.put("maxed", new int[] {4, 2, 2, 2, 1, 3, 2, 1, 2});
+    }
+    
+    private static final int FIELD_SIZE = 400;
+    private static final int STEP_LEVEL = 20;
+    private static final int INPUT_COUNT = 4096; // A power of 2 so that the inputs can be cycled through with a mask.
+    private static final int PROBE_COUNT = 1024; // Same here.
+    // Note that all of the GameObjects here are seeded, so every run of the benchmarks measures the same levels.
+    
+    // Regenerates the given level over and over. Returns the obstacle count so that the work can't be optimized away.
+    public static IntSupplier levelGeneration(int level)
+    {
+        GameObjects gameObjects = new GameObjects(level);
+        return () -> {
+            gameObjects.generateLevel(level);
+            return gameObjects.getObstacles().size();
+        };
+    }
+    
+    // Same as levelGeneration(), but every level is the best of 8 (see BestOfKGenerator), with the candidates on the common pool.
+    public static IntSupplier bestOfKGeneration(int level)
+    {
+        GameObjects gameObjects = new GameObjects(level);
+        gameObjects.setGenerator(new BestOfKGenerator(8, ForkJoinPool.commonPool()));
+        return () -> {
+            gameObjects.generateLevel(level);
+            return gameObjects.getObstacles().size();
+        };
+    }
+    
+    // Loads levels of the given level number from their encoding (see GameObjects.encode()), going through a fixed set of them.
+    public static IntSupplier levelDecoding(int level)
+    {
+        GameObjects gameObjects = new GameObjects(level);
+        ByteBuffer levels = ByteBuffer.allocateDirect(PROBE_COUNT * GameObjects.ENCODED_SIZE); // Like a memory-mapped LevelPack.
+        for (int i = 0; i < PROBE_COUNT; i++)
+        {
+            gameObjects.generateLevel(level);
+            gameObjects.encode(levels, i * GameObjects.ENCODED_SIZE, level);
+        }
+        int[] counter = new int[1];
+        return () -> {
+            gameObjects.decode(levels, (counter[0]++ & (PROBE_COUNT - 1)) * GameObjects.ENCODED_SIZE);
+            return gameObjects.getObstacles().size();
+        };
+    }
+    
+    // Ticks a GameSimulation with the named upgrade set, using a fixed pseudo-random sequence of held keys.
+    // Reaching the goal only puts the player back at the start, so that level generation isn't part of this measurement.
+    public static IntSupplier simulationStep(String upgradeSet)
+    {
+        int[] upgrades = UPGRADE_SETS.get(upgradeSet);
+        if (upgrades == null)
+        {
+            throw new IllegalArgumentException("Unknown upgrade set: " + upgradeSet);
+        }
+        GameSimulation simulation = new GameSimulation(FIELD_SIZE, FIELD_SIZE, upgrades.clone(), STEP_LEVEL);
+        simulation.resetLevel(STEP_LEVEL);
+        int[] inputs = createInputs(new Random(STEP_LEVEL));
+        int[] counter = new int[1];
+        return () -> {
+            int result = simulation.tick(inputs[counter[0]++ & (INPUT_COUNT - 1)]);
+            if (result == GameSimulation.TICK_GOAL)
+            {
+                simulation.resetPlayer();
+            }
+            return result + simulation.getPlayerX();
+        };
+    }
+    
+    // Checks one player-sized rectangle from a fixed set spread over the screen against the obstacles of a level.
+    // useGrid picks between the occupancy bitset and going through the obstacle list (what the game used to do).
+    public static IntSupplier obstacleIntersection(int level, boolean useGrid)
+    {
+        GameObjects gameObjects = new GameObjects(level);
+        gameObjects.generateLevel(level);
+        Random random = new Random(level);
+        Rectangle[] probes = new Rectangle[PROBE_COUNT];
+        for (int i = 0; i < PROBE_COUNT; i++)
+        {
+            probes[i] = new Rectangle(random.nextInt(FIELD_SIZE - 16), random.nextInt(FIELD_SIZE - 16), 16, 16);
+        }
+        int[] counter = new int[1];
+        if (useGrid)
+        {
+            return () -> gameObjects.intersectsObstacle(probes[counter[0]++ & (PROBE_COUNT - 1)]) ? 1 : 0;
+        }
+        return () -> {
+            Rectangle probe = probes[counter[0]++ & (PROBE_COUNT - 1)];
+            for (Rectangle tempRect : gameObjects.getObstacles())
+            {
+                if (probe.intersects(tempRect))
+                {
+                    return 1;
+                }
+            }
+            return 0;
+        };
+    }
+    
+    // Sweeps a player-sized rectangle from a fixed set of starting points by a fixed set of moves (up to a teleport's 96 pixels)
+    // against the obstacles of a level, which is what GameSimulation does at the end of every tick.
+    public static IntSupplier obstacleSweep(int level)
+    {
+        GameObjects gameObjects = new GameObjects(level);
+        gameObjects.generateLevel(level);
+        Random random = new Random(level);
+        int[] moves = new int[4 * PROBE_COUNT];
+        for (int i = 0; i < moves.length; i += 4)
+        {
+            moves[i] = random.nextInt(FIELD_SIZE - 16);
+            moves[i + 1] = random.nextInt(FIELD_SIZE - 16);
+            moves[i + 2] = random.nextInt(193) - 96;
+            moves[i + 3] = random.nextInt(193) - 96;
+        }
+        int[] counter = new int[1];
+        return () -> {
+            int index = 4 * (counter[0]++ & (PROBE_COUNT - 1));
+            double time = gameObjects.sweepObstacles(moves[index], moves[index + 1], 16, 16, moves[index + 2], moves[index + 3]);
+            return time == GameObjects.NO_HIT ? 0 : 1;
+        };
+    }
+    
+    // Updates and draws one tick of a ParticleSystem that is kept at the given number of active effects, into an off-screen image.
+    // Every frame, the effects that finished are spawned again, so the mix of effect types and ages stays about the same.
+    public static IntSupplier particleFrame(int activeEffects)
+    {
+        ParticleSystem particles = new ParticleSystem();
+        BufferedImage image = new BufferedImage(FIELD_SIZE, FIELD_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        int[] counter = new int[1];
+        return () -> {
+            while (particles.getCount() < activeEffects)
+            {
+                int tempIndex = counter[0]++;
+                particles.spawn(tempIndex % 3, (tempIndex * 37) % FIELD_SIZE, (tempIndex * 53) % FIELD_SIZE, tempIndex % 13);
+            }
+            particles.update();
+            particles.draw(g);
+            return particles.getCount();
+        };
+    }
+    
+    // Key presses that are held for a few ticks at a time, like a real player would. The menu keys and r are left out.
+    private static int[] createInputs(Random random)
+    {
+        int gameplayKeys = GameSimulation.RIGHT | GameSimulation.LEFT | GameSimulation.UP | GameSimulation.DOWN
+            | GameSimulation.Z | GameSimulation.X | GameSimulation.C | GameSimulation.SPACE;
+        int[] inputs = new int[INPUT_COUNT];
+        int keys = 0;
+        for (int i = 0; i < INPUT_COUNT; i++)
+        {
+            if (random.nextInt(6) == 0)
+            {
+                keys = random.nextInt() & gameplayKeys;
+            }
+            inputs[i] = keys;
+        }
+        return inputs;
+    }
+}
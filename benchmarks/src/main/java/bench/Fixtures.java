@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: Fixtures.java
+ * Looks up the workloads set up by BenchmarkFixtures (which is in the default package, see there for why).
+ * This is only called from @Setup methods, never while measuring.
+*/
+
+package bench;
+
+import java.lang.reflect.Method;
+import java.util.function.IntSupplier;
+
+final class Fixtures
+{
+    private Fixtures()
+    {
+    }
+    
+    static IntSupplier create(String name, Class<?>[] parameterTypes, Object... arguments)
+    {
+        try
+        {
+            Method method = Class.forName("BenchmarkFixtures").getMethod(name, parameterTypes);
+            return (IntSupplier) method.invoke(null, arguments);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Could not set up benchmark fixture " + name, e);
+        }
+    }
+}
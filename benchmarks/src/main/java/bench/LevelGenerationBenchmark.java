@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: LevelGenerationBenchmark.java
+ * Measures GameObjects.generateLevel() at early, middle and late levels, the same with the best of 8 candidates (BestOfKGenerator),
+ * and loading the same kind of levels from their 34-byte encoding (what a LevelPack does) for comparison.
+ * Level 29 is the last level that still has obstacles.
+*/
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LevelGenerationBenchmark
+{
+    @Param({"1", "10", "20", "29"})
+    public int level;
+    
+    private IntSupplier generation;
+    private IntSupplier bestOfKGeneration;
+    private IntSupplier decoding;
+    
+    @Setup
+    public void setUp()
+    {
+        generation = Fixtures.create("levelGeneration", new Class<?>[] {int.class}, level);
+        bestOfKGeneration = Fixtures.create("bestOfKGeneration", new Class<?>[] {int.class}, level);
+        decoding = Fixtures.create("levelDecoding", new Class<?>[] {int.class}, level);
+    }
+    
+    @Benchmark
+    public int generateLevel()
+    {
+        return generation.getAsInt();
+    }
+    
+    @Benchmark
+    public int generateBestOf8Level()
+    {
+        return bestOfKGeneration.getAsInt();
+    }
+    
+    @Benchmark
+    public int decodeLevel()
+    {
+        return decoding.getAsInt();
+    }
+}
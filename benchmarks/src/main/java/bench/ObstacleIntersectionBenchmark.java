@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: ObstacleIntersectionBenchmark.java
+ * Measures checking a player-sized rectangle against a level's obstacles,
+ * both with the occupancy bitset in GameObjects and by going through the obstacle list,
+ * and sweeping one along a move (the swept collision check that GameSimulation does every tick).
+*/
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObstacleIntersectionBenchmark
+{
+    @Param({"10", "29"})
+    public int level;
+    
+    private IntSupplier gridCheck;
+    private IntSupplier listCheck;
+    private IntSupplier sweepCheck;
+    
+    @Setup
+    public void setUp()
+    {
+        gridCheck = Fixtures.create("obstacleIntersection", new Class<?>[] {int.class, boolean.class}, level, true);
+        listCheck = Fixtures.create("obstacleIntersection", new Class<?>[] {int.class, boolean.class}, level, false);
+        sweepCheck = Fixtures.create("obstacleSweep", new Class<?>[] {int.class}, level);
+    }
+    
+    @Benchmark
+    public int occupancyGrid()
+    {
+        return gridCheck.getAsInt();
+    }
+    
+    @Benchmark
+    public int obstacleList()
+    {
+        return listCheck.getAsInt();
+    }
+    
+    @Benchmark
+    public int occupancyGridSweep()
+    {
+        return sweepCheck.getAsInt();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: ParticleBenchmark.java
+ * Measures updating and drawing one tick of special effects with ParticleSystem.
+ * Run it with the GC profiler (BenchmarkRunner always adds it): gc.alloc.rate.norm should stay at about 0 bytes per frame.
+*/
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ParticleBenchmark
+{
+    @Param({"16", "256"})
+    public int activeEffects;
+    
+    private IntSupplier frame;
+    
+    @Setup
+    public void setUp()
+    {
+        frame = Fixtures.create("particleFrame", new Class<?>[] {int.class}, activeEffects);
+    }
+    
+    @Benchmark
+    public int updateAndDraw()
+    {
+        return frame.getAsInt();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2025 Eric Zhong. All rights reserved.
+ * Licensed under the MIT License.
+*/
+
+/** File name: SimulationStepBenchmark.java
+ * Measures one physics tick (GameSimulation.tick(), which is what PlayerPanel.step() runs) with different sets of upgrades.
+ * See BenchmarkFixtures for what each upgrade set contains.
+*/
+
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationStepBenchmark
+{
+    @Param({"none", "midair", "dashes", "omnidash", "teleport", "invincible", "maxed"})
+    public String upgradeSet;
+    
+    private IntSupplier step;
+    
+    @Setup
+    public void setUp()
+    {
+        step = Fixtures.create("simulationStep", new Class<?>[] {String.class}, upgradeSet);
+    }
+    
+    @Benchmark
+    public int tick()
+    {
+        return step.getAsInt();
+    }
+}